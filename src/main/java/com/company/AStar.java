@@ -1,7 +1,6 @@
 package com.company;
 
 import java.awt.*;
-import java.util.PriorityQueue;
 
 /**
  * Uses both the distance and heuristics (estimated distance to destination) to determine the next node to search. As a
@@ -10,41 +9,117 @@ import java.util.PriorityQueue;
  */
 public class AStar extends SearchAlgorithm {
 
-    private class Node extends State implements Comparable<Node> {
+    /**
+     * Squares waiting to be searched. The key is the estimated total cost in the high 32 bits, and
+     * {@code Integer.MAX_VALUE - distance} in the low bits, so squares with the same cost that are closer to the end
+     * come first to speed up search.
+     */
+    private final CellHeap pq;
+    private final SearchContext context;
+    private final Heuristic heuristic;
 
-        public int cost;
+    /**
+     * Rectangles to skip over, or null to search square by square
+     */
+    private final RectangleDecomposition rectangles;
 
-        public Node(Point point, int cost, State prev) {
-            super(point, prev);
-            this.cost = cost;
-        }
+    /**
+     * Squares to go to next from the square being expanded, and the steps to each, when there are rectangles
+     */
+    private final int[] successors;
+    private final int[] costs;
 
-        @Override
-        public int compareTo(Node o) {
-            // prioritize nodes closer to the end if they are equal to speed up search
-            if (cost == o.cost) return distances[o.point.x][o.point.y] - distances[point.x][point.y];
-            return cost - o.cost;
-        }
+    public AStar(boolean[][] grid, int x1, int y1, int x2, int y2) {
+        this(grid, x1, y1, x2, y2, Heuristic.MANHATTAN);
     }
 
-    private final PriorityQueue<Node> pq = new PriorityQueue<>();
-    private final int[][] distances;
-    private final boolean[][] visited;
+    /**
+     * Creates an A* search that uses a different estimate of the distance to the destination
+     * @param heuristic the estimate to use. It should never be larger than the real distance, or the path found
+     *                  might not be the shortest.
+     * @see LandmarkHeuristic
+     */
+    public AStar(boolean[][] grid, int x1, int y1, int x2, int y2, Heuristic heuristic) {
+        this(grid, x1, y1, x2, y2, heuristic, new SearchContext(grid.length * grid[0].length));
+    }
 
-    public AStar(boolean[][] grid, int x1, int y1, int x2, int y2) {
+    /**
+     * Creates an A* search that reuses the scratch space of an earlier one. Nothing needs to be cleared, so this
+     * takes the same time no matter how large the grid is.
+     * @param heuristic the estimate to use
+     * @param context the scratch space, which must not be in use by another search
+     */
+    public AStar(boolean[][] grid, int x1, int y1, int x2, int y2, Heuristic heuristic, SearchContext context) {
+        this(grid, x1, y1, x2, y2, heuristic, null, context);
+    }
+
+    /**
+     * Creates an A* search that only expands the squares on the edges of empty rectangles, and jumps across them.
+     * This still finds the shortest path. Breadth first search needs every step to cost the same, so to search the
+     * closest squares first with rectangles, use this with {@link Heuristic#NONE}.
+     * @param heuristic the estimate to use
+     * @param rectangles the rectangles of the same walls as the grid, or null to search square by square. Rectangles
+     *                   that are not {@link RectangleDecomposition#isWorthUsing() worth using} are ignored.
+     * @param context the scratch space, which must not be in use by another search
+     */
+    public AStar(boolean[][] grid, int x1, int y1, int x2, int y2, Heuristic heuristic,
+                 RectangleDecomposition rectangles, SearchContext context) {
         super(grid, x1, y1, x2, y2);
-        distances = new int[grid.length][grid[0].length];
-        for (int i = 0; i < distances.length; i++) {
-            for (int j = 0; j < distances[0].length; j++) {
-                distances[i][j] = Integer.MAX_VALUE;
-            }
+        this.heuristic = heuristic;
+        this.context = context;
+        this.rectangles = rectangles != null && rectangles.isWorthUsing() ? rectangles : null;
+        successors = this.rectangles == null ? null : new int[5];
+        costs = this.rectangles == null ? null : new int[5];
+        context.begin(grid.length * height);
+        pq = context.heap;
+        addStart(x1 * height + y1);
+    }
+
+    /**
+     * Creates a search from many starts to many goals, which finds the shortest path from any start to any goal. The
+     * estimate for each square is the smallest estimate to any of the goals, which costs one call to the heuristic
+     * per goal, so this is meant for a handful of goals.
+     * @param starts the squares to start from
+     * @param goals the squares to stop at, at least one
+     * @param heuristic the estimate to use
+     * @param context the scratch space, which must not be in use by another search
+     */
+    public AStar(boolean[][] grid, Point[] starts, Point[] goals, Heuristic heuristic, SearchContext context) {
+        super(grid, goals);
+        this.heuristic = heuristic;
+        this.context = context;
+        rectangles = null;
+        successors = null;
+        costs = null;
+        context.begin(grid.length * height);
+        pq = context.heap;
+        for (Point start : starts) {
+            addStart(start.x * height + start.y);
         }
-        visited = new boolean[grid.length][grid[0].length];
-        pq.add(new Node(new Point(x1, y1), 0, null));
     }
 
-    private int manhattanDistance(int x1, int y1, int x2, int y2) {
-        return Math.abs(y2 - y1) + Math.abs(x2 - x1);
+    private void addStart(int cell) {
+        if (context.isSeen(cell)) return;
+        context.see(cell);
+        context.distances[cell] = 0;
+        context.parents[cell] = -1;
+        pq.add(key(estimate(cell / height, cell % height), 0), cell);
+    }
+
+    /**
+     * Estimates the distance from a square to the closest goal
+     */
+    private int estimate(int x, int y) {
+        if (goalCells.length == 1) return heuristic.estimate(x, y, dest.x, dest.y);
+        int best = Integer.MAX_VALUE;
+        for (int goal : goalCells) {
+            best = Math.min(best, heuristic.estimate(x, y, goal / height, goal % height));
+        }
+        return best;
+    }
+
+    private static long key(int fScore, int distance) {
+        return (long) fScore << 32 | (Integer.MAX_VALUE - distance);
     }
 
     private int distanceSquared(int x1, int y1, int x2, int y2) {
@@ -53,30 +128,51 @@ public class AStar extends SearchAlgorithm {
         return xDist * xDist + yDist * yDist;
     }
 
+    /**
+     * Searches the square with the lowest estimated total cost
+     * @return index of the square, or -1 if the search ended
+     */
     @Override
-    public Point next() {
-        Node curr;
+    protected int step() {
+        if (!beginStep()) return -1;
+        int curr;
         do {
+            if (pq.isEmpty()) {
+                end(SearchStatus.UNREACHABLE);
+                return -1;
+            }
             curr = pq.remove();
-        } while (visited[curr.point.x][curr.point.y]);
-        if (curr.point.equals(dest)) {
-            notDone = false;
-            currentState = curr;
+        } while (context.isClosed(curr));
+        if (isGoal(curr)) {
+            finish(pathTo(curr, context.parents));
         } else {
-            visited[curr.point.x][curr.point.y] = true;
-            int distanceToCurr = distances[curr.point.x][curr.point.y];
-            Node finalCurr = curr;
-            applyLambdaToNeighbors(curr.point.x, curr.point.y, (x, y) -> {
-                if (!visited[x][y]) {
-                    int distance = distanceToCurr + 1;
-                    if (distance < distances[x][y]) {
-                        distances[x][y] = distance;
-                        int fScore = distance + manhattanDistance(x, y, dest.x, dest.y);
-                        pq.add(new Node(new Point(x, y), fScore, finalCurr));
-                    }
+            context.close(curr);
+            if (rectangles != null) {
+                int count = rectangles.successors(curr, goalCells[0], successors, costs);
+                for (int i = 0; i < count; i++) {
+                    int cell = successors[i];
+                    relax(cell, cell / height, cell % height, context.distances[curr] + costs[i], curr);
                 }
-            });
+                return curr;
+            }
+            int x = curr / height;
+            int y = curr - x * height;
+            int distance = context.distances[curr] + 1;
+            if (!grid[x-1][y]) relax(curr - height, x - 1, y, distance, curr);
+            if (!grid[x][y-1]) relax(curr - 1, x, y - 1, distance, curr);
+            if (!grid[x][y+1]) relax(curr + 1, x, y + 1, distance, curr);
+            if (!grid[x+1][y]) relax(curr + height, x + 1, y, distance, curr);
+        }
+        return curr;
+    }
+
+    private void relax(int cell, int x, int y, int distance, int parent) {
+        if (!context.isClosed(cell) && distance < context.distance(cell)) {
+            context.see(cell);
+            context.distances[cell] = distance;
+            context.parents[cell] = parent;
+            int fScore = distance + estimate(x, y);
+            pq.add(key(fScore, distance), cell);
         }
-        return curr.point;
     }
 }
@@ -0,0 +1,47 @@
+package com.company;
+
+import java.util.Locale;
+
+/**
+ * The kinds of {@link SearchAlgorithm} that can be asked for by name, such as from {@link PathServer}
+ */
+public enum AlgorithmType {
+    DFS("dfs"),
+    BFS("bfs"),
+    A_STAR("astar"),
+    GREEDY("greedy"),
+    ANYTIME_A_STAR("anytime"),
+    IDA_STAR("idastar"),
+    SMA_STAR("smastar"),
+    PATH_DATABASE("pathdb"),
+    FLOW_FIELD("flowfield"),
+    CORRIDOR("corridor"),
+    RECTANGLES("rectangles");
+
+    private final String name;
+
+    AlgorithmType(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the name used to ask for this algorithm
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Finds an algorithm by name
+     * @param name the name, in any case
+     * @return the algorithm
+     * @throws IllegalArgumentException if there is no algorithm with the name
+     */
+    public static AlgorithmType parse(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        for (AlgorithmType type : values()) {
+            if (type.name.equals(lower)) return type;
+        }
+        throw new IllegalArgumentException("Unknown algorithm: " + name);
+    }
+}
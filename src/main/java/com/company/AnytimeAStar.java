@@ -0,0 +1,278 @@
+package com.company;
+
+import java.util.Arrays;
+
+/**
+ * Anytime Repairing A* (ARA*). The heuristic is multiplied by an inflation factor, which makes the search act more
+ * like greedy best first search and find a path quickly, but the path can be up to that factor longer than the
+ * shortest one. After a path is found, the factor is lowered and the search goes on to improve the path, reusing the
+ * distances it already found instead of starting over. This repeats until the factor reaches 1, which gives the
+ * shortest path, or until the deadline or node budget runs out, in which case the best path found so far is used and
+ * the search still counts as {@link SearchStatus#SUCCEEDED}. If the budget runs out before any path is found, the
+ * search ends with {@link SearchStatus#OUT_OF_BUDGET}.
+ * <p>
+ * At any point, {@link #getSuboptimalityBound()} tells how much longer than the shortest path the current path can
+ * be.
+ * @see AStar
+ * @see Greedy
+ */
+public class AnytimeAStar extends SearchAlgorithm {
+
+    /**
+     * Squares waiting to be searched. The key is the inflated cost as the bits of a float in the high 32 bits, which
+     * sort the same way as the floats since they are never negative, and {@code Integer.MAX_VALUE - distance} in the
+     * low bits, so squares with the same cost that are closer to the end come first to speed up search. An entry is
+     * out of date if its distance is not the square's distance any more.
+     */
+    private final CellHeap pq;
+    /**
+     * Distances and parents of the squares. Each iteration is a new pass of the context, so a square is closed if it
+     * was expanded in this iteration.
+     */
+    private final SearchContext context;
+    private final Heuristic heuristic;
+    private final int destIndex;
+    /**
+     * Squares whose distance went down after they were expanded in this iteration. They are searched again in the
+     * next iteration. A square can be in here more than once.
+     */
+    private int[] inconsistent = new int[16];
+    private int inconsistentCount;
+    /**
+     * Scratch space for the squares put back in the queue for the next iteration
+     */
+    private int[] reopened = new int[16];
+    private final double epsilonStep;
+    private double epsilon;
+    /**
+     * Inflation factor of the current path, or infinity if there is none yet
+     */
+    private double solutionEpsilon = Double.POSITIVE_INFINITY;
+    private int solutionLength;
+    private State solution;
+
+    /**
+     * Creates a search with no deadline or node budget, which keeps going until it finds the shortest path
+     * @param epsilon starting inflation factor, at least 1
+     */
+    public AnytimeAStar(boolean[][] grid, int x1, int y1, int x2, int y2, double epsilon) {
+        this(grid, x1, y1, x2, y2, epsilon, new SearchContext(grid.length * grid[0].length));
+    }
+
+    /**
+     * Creates a search with no deadline or node budget that reuses the scratch space of an earlier one
+     * @param epsilon starting inflation factor, at least 1
+     * @param context the scratch space, which must not be in use by another search
+     */
+    public AnytimeAStar(boolean[][] grid, int x1, int y1, int x2, int y2, double epsilon, SearchContext context) {
+        this(grid, x1, y1, x2, y2, epsilon, 0.5, 0, 0, Heuristic.MANHATTAN, context);
+    }
+
+    /**
+     * Creates a search
+     * @param epsilon starting inflation factor, at least 1
+     * @param epsilonStep how much to lower the inflation factor after each path is found
+     * @param deadlineNanos value of {@link System#nanoTime()} after which the best path found so far is used, or 0
+     *                      for no deadline. This is the same as calling {@link #setDeadline(long)}.
+     * @param nodeBudget most squares to expand before the best path found so far is used, or 0 for no limit. This is
+     *                   the same as calling {@link #setMaxExpansions(long)}.
+     * @param heuristic estimate of the distance to the destination, which should never be too large
+     */
+    public AnytimeAStar(boolean[][] grid, int x1, int y1, int x2, int y2, double epsilon, double epsilonStep,
+                        long deadlineNanos, long nodeBudget, Heuristic heuristic) {
+        this(grid, x1, y1, x2, y2, epsilon, epsilonStep, deadlineNanos, nodeBudget, heuristic,
+                new SearchContext(grid.length * grid[0].length));
+    }
+
+    /**
+     * Creates a search that reuses the scratch space of an earlier one. Nothing needs to be cleared, so this takes
+     * the same time no matter how large the grid is.
+     * @param context the scratch space, which must not be in use by another search
+     * @see #AnytimeAStar(boolean[][], int, int, int, int, double, double, long, long, Heuristic)
+     */
+    public AnytimeAStar(boolean[][] grid, int x1, int y1, int x2, int y2, double epsilon, double epsilonStep,
+                        long deadlineNanos, long nodeBudget, Heuristic heuristic, SearchContext context) {
+        super(grid, x1, y1, x2, y2);
+        if (epsilon < 1) throw new IllegalArgumentException("Inflation factor must be at least 1: " + epsilon);
+        if (epsilonStep <= 0) throw new IllegalArgumentException("Step must be positive: " + epsilonStep);
+        this.epsilon = epsilon;
+        this.epsilonStep = epsilonStep;
+        if (deadlineNanos != 0) setDeadline(deadlineNanos);
+        setMaxExpansions(nodeBudget);
+        this.heuristic = heuristic;
+        this.context = context;
+        destIndex = x2 * height + y2;
+        context.begin(grid.length * height);
+        pq = context.heap;
+        int start = x1 * height + y1;
+        context.see(start);
+        context.distances[start] = 0;
+        context.parents[start] = -1;
+        pq.add(key(start), start);
+    }
+
+    /**
+     * @return the inflated cost of a square from its current distance
+     */
+    private double cost(int cell) {
+        int x = cell / height;
+        int y = cell % height;
+        return context.distances[cell] + epsilon * heuristic.estimate(x, y, dest.x, dest.y);
+    }
+
+    private long key(int cell) {
+        return (long) Float.floatToIntBits((float) cost(cell)) << 32 | (Integer.MAX_VALUE - context.distances[cell]);
+    }
+
+    /**
+     * @return whether a queue entry still has the square's distance, and the square is not closed
+     */
+    private boolean isValid(long key, int cell) {
+        return Integer.MAX_VALUE - (int) key == context.distances[cell] && !context.isClosed(cell);
+    }
+
+    /**
+     * Removes entries that are out of date from the top of the queue
+     * @return the best square that is up to date, or -1 if there are none
+     */
+    private int peekValid() {
+        while (!pq.isEmpty()) {
+            if (isValid(pq.peekKey(), pq.peek())) return pq.peek();
+            pq.remove();
+        }
+        return -1;
+    }
+
+    @Override
+    protected int step() {
+        while (true) {
+            int top = peekValid();
+            int goalDistance = context.distance(destIndex);
+            if (top == -1 || (goalDistance != Integer.MAX_VALUE && goalDistance <= cost(top))) {
+                // this iteration is done
+                if (goalDistance == Integer.MAX_VALUE) {
+                    end(SearchStatus.UNREACHABLE);
+                    return -1;
+                }
+                publishSolution();
+                SearchStatus limit = checkLimits(true);
+                if (limit == SearchStatus.CANCELLED) {
+                    end(limit);
+                    return -1;
+                }
+                if (epsilon <= 1 || limit != null) return done();
+                startNextIteration();
+                continue;
+            }
+            SearchStatus limit = checkLimits(false);
+            if (limit == SearchStatus.OUT_OF_BUDGET && solution != null) return done();
+            if (limit != null) {
+                end(limit);
+                return -1;
+            }
+            expansions++;
+            pq.remove();
+            expand(top);
+            return top;
+        }
+    }
+
+    private void expand(int cell) {
+        context.close(cell);
+        int x = cell / height;
+        int y = cell % height;
+        int distance = context.distances[cell] + 1;
+        for (int d = 0; d < 4; d++) {
+            int nx = x + Direction.X[d];
+            int ny = y + Direction.Y[d];
+            int n = nx * height + ny;
+            if (grid[nx][ny] || distance >= context.distance(n)) continue;
+            context.distances[n] = distance;
+            context.parents[n] = cell;
+            if (context.isClosed(n)) {
+                // already expanded with a worse distance; fix it in the next iteration
+                if (inconsistentCount == inconsistent.length) {
+                    inconsistent = Arrays.copyOf(inconsistent, inconsistentCount * 2);
+                }
+                inconsistent[inconsistentCount++] = n;
+            } else {
+                context.see(n);
+                pq.add(key(n), n);
+            }
+        }
+    }
+
+    /**
+     * Saves the path to the destination as the current best path
+     */
+    private void publishSolution() {
+        if (solution != null && solutionEpsilon <= epsilon) return;
+        solutionEpsilon = epsilon;
+        solutionLength = context.distances[destIndex];
+        solution = pathTo(destIndex, context.parents);
+    }
+
+    /**
+     * Lowers the inflation factor, and puts the open and inconsistent squares back in the queue with new keys
+     */
+    private void startNextIteration() {
+        epsilon = Math.max(1, epsilon - epsilonStep);
+        int count = 0;
+        for (int i = 0; i < pq.size(); i++) {
+            int cell = pq.cellAt(i);
+            if (!isValid(pq.keyAt(i), cell)) continue;
+            if (count == reopened.length) reopened = Arrays.copyOf(reopened, count * 2);
+            reopened[count++] = cell;
+        }
+        pq.clear();
+        context.nextPass();
+        // closing a square here only marks it as already put back, so it is not put back twice
+        for (int i = 0; i < count + inconsistentCount; i++) {
+            int cell = i < count ? reopened[i] : inconsistent[i - count];
+            if (context.isClosed(cell)) continue;
+            context.close(cell);
+            pq.add(key(cell), cell);
+        }
+        for (int i = 0; i < count + inconsistentCount; i++) {
+            context.see(i < count ? reopened[i] : inconsistent[i - count]);
+        }
+        inconsistentCount = 0;
+    }
+
+    private int done() {
+        finish(solution);
+        return destIndex;
+    }
+
+    /**
+     * Gets how much longer than the shortest path the current path can be. This can be lower than the inflation
+     * factor, since the squares still waiting to be searched show how short a better path could be.
+     * @return the bound, 1 if the current path is the shortest, or infinity if no path has been found yet
+     */
+    public double getSuboptimalityBound() {
+        if (solution == null) return Double.POSITIVE_INFINITY;
+        int goalDistance = solutionLength;
+        long lowest = Long.MAX_VALUE;
+        for (int i = 0; i < pq.size(); i++) {
+            int cell = pq.cellAt(i);
+            if (isValid(pq.keyAt(i), cell)) {
+                lowest = Math.min(lowest, (long) context.distances[cell]
+                        + heuristic.estimate(cell / height, cell % height, dest.x, dest.y));
+            }
+        }
+        for (int i = 0; i < inconsistentCount; i++) {
+            int cell = inconsistent[i];
+            lowest = Math.min(lowest, (long) context.distances[cell]
+                    + heuristic.estimate(cell / height, cell % height, dest.x, dest.y));
+        }
+        if (lowest >= goalDistance) return 1;
+        return Math.min(solutionEpsilon, (double) goalDistance / lowest);
+    }
+
+    /**
+     * @return the inflation factor the search is currently using
+     */
+    public double getEpsilon() {
+        return epsilon;
+    }
+}
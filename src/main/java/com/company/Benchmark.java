@@ -0,0 +1,859 @@
+package com.company;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Measures how fast the search algorithms are on large grids, without the GUI. Run with the name of a benchmark as
+ * the argument, or no argument to run all of them.
+ */
+public class Benchmark {
+
+    /**
+     * Number of times each measurement is run before timing it, so the JIT compiler can warm up
+     */
+    private static final int WARMUP_RUNS = 3;
+
+    /**
+     * Number of timed runs; the median is reported
+     */
+    private static final int TIMED_RUNS = 5;
+
+    /**
+     * Runs the benchmarks
+     * @param args the name of the benchmark to run (bfs, landmarks, parallel, context, bounded, mazes, caves,
+     *             corridors, rectangles, trace, portfolio, or flowfield), or nothing to run all of them. The
+     *             parallel benchmark takes the grid size and the most threads to use as optional extra arguments, the
+     *             mazes benchmark takes the most squares to generate, and the caves benchmark takes the largest width
+     *             to generate.
+     * @throws IOException if the trace benchmark cannot write its temporary file
+     */
+    public static void main(String[] args) throws IOException {
+        String which = args.length > 0 ? args[0] : "all";
+        boolean all = which.equals("all");
+        if (all || which.equals("bfs")) bitParallelBfs();
+        if (all || which.equals("landmarks")) landmarks();
+        if (all || which.equals("parallel")) {
+            parallelBfs(args.length > 1 ? Integer.parseInt(args[1]) : 2048,
+                    args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors());
+        }
+        if (all || which.equals("context")) reusedContext();
+        if (all || which.equals("bounded")) memoryBounded();
+        if (all || which.equals("mazes")) mazes(args.length > 1 ? Long.parseLong(args[1]) : 10_000_000);
+        if (all || which.equals("caves")) caves(args.length > 1 ? Integer.parseInt(args[1]) : 16384);
+        if (all || which.equals("corridors")) corridors();
+        if (all || which.equals("rectangles")) rectangles();
+        if (all || which.equals("trace")) trace();
+        if (all || which.equals("portfolio")) portfolio();
+        if (all || which.equals("flowfield")) flowFields();
+    }
+
+    /**
+     * Compares breadth first search one square at a time with the bit parallel version, on an empty grid where the
+     * destination is in the far corner, so both need to visit the whole grid
+     */
+    private static void bitParallelBfs() {
+        System.out.println("== Bit parallel BFS ==");
+        for (int size : new int[] {256, 1024, 2048}) {
+            boolean[][] grid = emptyGrid(size, size);
+            long cellByCell = time(() -> {
+                SearchAlgorithm bfs = new BreadthFirstSearch(grid, 1, 1, size, size);
+                run(bfs);
+            });
+            BitParallelBreadthFirstSearch bitBfs = new BitParallelBreadthFirstSearch(grid);
+            long distance = time(() -> bitBfs.distance(1, 1, size, size));
+            long reachable = time(() -> bitBfs.reachable(1, 1));
+            long levels = time(() -> bitBfs.distances(1, 1));
+            System.out.printf("%5dx%-5d cell by cell %8.2f ms | bit parallel: distance %7.2f ms (%5.1fx), "
+                            + "reachable %7.2f ms (%5.1fx), levels %7.2f ms (%5.1fx)%n",
+                    size, size, cellByCell / 1e6,
+                    distance / 1e6, (double) cellByCell / distance,
+                    reachable / 1e6, (double) cellByCell / reachable,
+                    levels / 1e6, (double) cellByCell / levels);
+        }
+    }
+
+    /**
+     * Compares A* with the manhattan distance and with landmarks, between random pairs of open squares on mazes made
+     * by each of the generators in {@link MazeGenerator}, where the manhattan distance ignores most of the walls.
+     * Also shows how long the landmarks take to pick and how much memory their tables use.
+     * @throws IllegalStateException if the landmarks give a longer path, which would mean they overestimate
+     */
+    private static void landmarks() {
+        System.out.println("== Landmarks (ALT), 511x511, 20 searches between random open squares ==");
+        int size = 511;
+        String[] names = {"random", "dfs", "kruskal", "eller"};
+        for (int m = 0; m < names.length; m++) {
+            boolean[][] grid = emptyGrid(size, size);
+            Random random = new Random(1);
+            generate(m, grid, random);
+            int[] queries = openPairs(grid, 20, random);
+            SearchContext context = new SearchContext(grid.length * grid[0].length);
+            long[] manhattan = new long[2];
+            manhattan[1] = time(() -> {
+                manhattan[0] = 0;
+                for (int q = 0; q < queries.length; q += 4) {
+                    manhattan[0] += expansions(new AStar(grid, queries[q], queries[q + 1], queries[q + 2],
+                            queries[q + 3], Heuristic.MANHATTAN, context));
+                }
+            }, 1, 3);
+            System.out.printf("%-8s manhattan    %8.2f ms %9d expanded%n", names[m], manhattan[1] / 1e6, manhattan[0]);
+            for (int count : new int[] {4, 8, 16}) {
+                LandmarkHeuristic landmarks = new LandmarkHeuristic(grid, count);
+                long[] alt = new long[2];
+                alt[1] = time(() -> {
+                    alt[0] = 0;
+                    for (int q = 0; q < queries.length; q += 4) {
+                        alt[0] += expansions(new AStar(grid, queries[q], queries[q + 1], queries[q + 2],
+                                queries[q + 3], landmarks, context));
+                    }
+                }, 1, 3);
+                for (int q = 0; q < queries.length; q += 4) {
+                    AStar plain = new AStar(grid, queries[q], queries[q + 1], queries[q + 2], queries[q + 3],
+                            Heuristic.MANHATTAN, context);
+                    plain.run();
+                    int length = plain.path().length;
+                    AStar withLandmarks = new AStar(grid, queries[q], queries[q + 1], queries[q + 2], queries[q + 3],
+                            landmarks, context);
+                    withLandmarks.run();
+                    if (withLandmarks.path().length != length) {
+                        throw new IllegalStateException("Landmarks gave a path of " + withLandmarks.path().length
+                                + " squares instead of " + length);
+                    }
+                }
+                System.out.printf("         %2d landmarks %8.2f ms %9d expanded (%5.1fx fewer) | %s%n", count,
+                        alt[1] / 1e6, alt[0], (double) manhattan[0] / alt[0], landmarks);
+            }
+        }
+    }
+
+    /**
+     * Measures how the parallel breadth first search speeds up with more threads, finding the distance to every
+     * square of an empty grid from the middle
+     * @param size width and height of the grid
+     * @param maxThreads most threads to try; the thread counts tried are the powers of two up to this, and this
+     */
+    private static void parallelBfs(int size, int maxThreads) {
+        System.out.println("== Parallel BFS, " + size + "x" + size + " ==");
+        boolean[][] grid = emptyGrid(size, size);
+        int middle = size / 2 + 1;
+        long serial = 0;
+        for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            ParallelBreadthFirstSearch bfs = new ParallelBreadthFirstSearch(grid, pool);
+            long t = time(() -> bfs.distances(middle, middle));
+            pool.shutdown();
+            if (threads == 1) serial = t;
+            System.out.printf("%3d threads %9.2f ms  speedup %5.2fx%n", threads, t / 1e6, (double) serial / t);
+            if (threads >= maxThreads) break;
+        }
+    }
+
+    /**
+     * Compares short searches on a large grid with a new search context each time against one reused context, which
+     * does not need to allocate or clear anything
+     */
+    private static void reusedContext() {
+        System.out.println("== Reused search context, 20 searches of length 4 ==");
+        for (int size : new int[] {256, 1024, 2048}) {
+            boolean[][] grid = emptyGrid(size, size);
+            long fresh = time(() -> {
+                for (int i = 0; i < 20; i++) {
+                    run(new AStar(grid, 1 + i % size, 1, 1 + i % size, 5));
+                }
+            });
+            SearchContext context = new SearchContext(grid.length * grid[0].length);
+            long reused = time(() -> {
+                for (int i = 0; i < 20; i++) {
+                    run(new AStar(grid, 1 + i % size, 1, 1 + i % size, 5, Heuristic.MANHATTAN, context));
+                }
+            });
+            System.out.printf("%5dx%-5d new context %9.3f ms | reused %9.3f ms (%6.1fx)%n",
+                    size, size, fresh / 1e6, reused / 1e6, (double) fresh / reused);
+        }
+    }
+
+    /**
+     * Compares the time and memory of A* with the memory-bounded searches, on a grid with a quarter of the squares
+     * filled with walls at random, and checks that they find paths as long as the one A* finds
+     */
+    private static void memoryBounded() {
+        System.out.println("== Memory-bounded search, 2048x2048 with 25% walls ==");
+        int size = 2048;
+        boolean[][] grid = randomGrid(size, size, 0.25, 1);
+        for (int span : new int[] {200, 1000}) {
+            int from = size / 2 - span / 2;
+            int to = size / 2 + span / 2;
+            grid[from][from] = false;
+            grid[to][to] = false;
+            long aStar = time(() -> run(new AStar(grid, from, from, to, to)));
+            // the context holds four ints for every square of the grid
+            long aStarBytes = (long) grid.length * grid[0].length * 4 * Integer.BYTES;
+            IterativeDeepeningAStar[] ida = new IterativeDeepeningAStar[1];
+            long idaTime = time(() -> {
+                ida[0] = new IterativeDeepeningAStar(grid, from, from, to, to, 1 << 16, Heuristic.MANHATTAN);
+                run(ida[0]);
+            });
+            MemoryBoundedAStar[] sma = new MemoryBoundedAStar[1];
+            long smaTime = time(() -> {
+                sma[0] = new MemoryBoundedAStar(grid, from, from, to, to, 1 << 16);
+                run(sma[0]);
+            });
+            // both have to find a shortest path, except that SMA* may run out of nodes before it can hold one
+            AStar shortest = new AStar(grid, from, from, to, to);
+            shortest.run();
+            int length = shortest.path().length;
+            if (ida[0].getStatus() != SearchStatus.SUCCEEDED || ida[0].path().length != length) {
+                throw new IllegalStateException("IDA* ended " + ida[0].getStatus() + " with a path of "
+                        + ida[0].path().length + " squares instead of " + length);
+            }
+            if (sma[0].getStatus() != SearchStatus.OUT_OF_BUDGET
+                    && (sma[0].getStatus() != SearchStatus.SUCCEEDED || sma[0].path().length != length)) {
+                throw new IllegalStateException("SMA* ended " + sma[0].getStatus() + " with a path of "
+                        + sma[0].path().length + " squares instead of " + length);
+            }
+            System.out.printf("span %4d A* %8.2f ms %9d bytes | IDA* %8.2f ms %9d bytes | SMA* %8.2f ms %9d bytes "
+                            + "(%d nodes, %s)%n",
+                    span, aStar / 1e6, aStarBytes, idaTime / 1e6, ida[0].getPeakBytes(),
+                    smaTime / 1e6, sma[0].getPeakBytes(), sma[0].getPeakNodes(), sma[0].getStatus());
+        }
+    }
+
+    /**
+     * Measures how fast each maze generator fills square grids from a thousand squares up, how many bytes it
+     * allocates for each square, and the most heap in use while it runs. The grid is made beforehand, so the bytes
+     * allocated are only the generator's own, while the peak heap includes the grid.
+     * @param maxCells the most squares to generate; a hundred million needs a heap of about a gigabyte
+     */
+    private static void mazes(long maxCells) {
+        System.out.println("== Maze generators ==");
+        String[] names = {"random", "dfs", "kruskal", "eller"};
+        for (long cells = 1000; cells <= maxCells; cells *= 10) {
+            // odd, so the mazes fill the whole grid
+            int side = (int) Math.sqrt(cells) | 1;
+            long squares = (long) side * side;
+            boolean[][] grid = emptyGrid(side, side);
+            // small grids are generated many times in each timed run, so the time is long enough to measure
+            int repeats = (int) Math.max(1, 1_000_000 / squares);
+            for (int i = 0; i < names.length; i++) {
+                int generator = i;
+                Random random = new Random(1);
+                Runnable once = () -> generate(generator, grid, random);
+                Runnable r = () -> {
+                    for (int j = 0; j < repeats; j++) once.run();
+                };
+                long t = squares >= 10_000_000 ? time(r, 1, 1) : time(r);
+                long bytes = allocatedBytes(once);
+                long peak = peakHeap(once);
+                System.out.printf("%11d squares %-8s %8.1f M squares/s %8.3f bytes/square  peak heap %8.1f MB%n",
+                        squares, names[i], squares * repeats / (t / 1e9) / 1e6, (double) bytes / squares,
+                        peak / 1e6);
+            }
+        }
+    }
+
+    /**
+     * Measures how fast the cave generator fills square grids, on one thread and on all of them
+     * @param maxSize the largest width and height to try; 16384 needs a heap of about half a gigabyte
+     */
+    private static void caves(int maxSize) {
+        System.out.println("== Cave generator ==");
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int size = 1024; size <= maxSize; size *= 4) {
+            boolean[][] grid = emptyGrid(size, size);
+            ForkJoinPool single = new ForkJoinPool(1);
+            long serial = time(() -> new CaveGenerator(single).generate(grid, 1), 1, 3);
+            single.shutdown();
+            long parallel = time(() -> new CaveGenerator().generate(grid, 1), 1, 3);
+            System.out.printf("%5dx%-5d 1 thread %8.2f ms | %2d threads %8.2f ms (%5.2fx) %7.1f M squares/s%n",
+                    size, size, serial / 1e6, threads, parallel / 1e6, (double) serial / parallel,
+                    (double) size * size / (parallel / 1e9) / 1e6);
+        }
+    }
+
+    /**
+     * Compares breadth first search, A*, and A* on a corridor graph, between random pairs of open squares on mazes
+     * with no loops, mazes with some loops, and caves. Also measures how long the corridor graph takes to build and
+     * to update after toggling a random square inside the border, and checks every path against breadth first search
+     * after the build and after each change to the grid.
+     */
+    private static void corridors() {
+        System.out.println("== Corridor graph, 1001x1001, 20 searches between random open squares ==");
+        int size = 1001;
+        String[] names = {"dfs maze", "kruskal", "braided", "caves"};
+        for (int m = 0; m < names.length; m++) {
+            boolean[][] grid = emptyGrid(size, size);
+            Random random = new Random(1);
+            switch (m) {
+                case 0 -> MazeGenerator.dfsMaze(grid, random);
+                case 1 -> MazeGenerator.kruskalMaze(grid, random);
+                case 2 -> {
+                    // knock down a tenth of the walls between rooms, which adds loops
+                    MazeGenerator.kruskalMaze(grid, random);
+                    for (int x = 1; x <= size; x++) {
+                        for (int y = 1 + x % 2; y <= size; y += 2) {
+                            if (random.nextInt(10) == 0) grid[x][y] = false;
+                        }
+                    }
+                }
+                default -> new CaveGenerator().generate(grid, 1);
+            }
+            // the searches go between squares in the biggest open area, so they all find a path
+            int[] queries = openPairs(grid, 20, random);
+            long build = time(() -> new CorridorGraph(grid), 1, 3);
+            CorridorGraph graph = new CorridorGraph(grid);
+            SearchContext context = new SearchContext(grid.length * grid[0].length);
+            long[] expanded = new long[3];
+            long[] times = new long[3];
+            for (int a = 0; a < 3; a++) {
+                int algorithm = a;
+                Runnable r = () -> {
+                    for (int q = 0; q < queries.length; q += 4) {
+                        SearchAlgorithm search = switch (algorithm) {
+                            case 0 -> new BreadthFirstSearch(grid, queries[q], queries[q + 1], queries[q + 2],
+                                    queries[q + 3], context);
+                            case 1 -> new AStar(grid, queries[q], queries[q + 1], queries[q + 2], queries[q + 3],
+                                    Heuristic.MANHATTAN, context);
+                            default -> new CorridorSearch(grid, graph, queries[q], queries[q + 1], queries[q + 2],
+                                    queries[q + 3], context);
+                        };
+                        expanded[algorithm] += expansions(search);
+                    }
+                };
+                times[a] = time(r, 1, 3);
+                expanded[a] = 0;
+                r.run();
+            }
+            checkCorridors(grid, graph, queries, context);
+            // toggle random squares and put them back, so the graph ends up the same as it started. Opening a wall
+            // and adding one do different work, so they are timed apart.
+            int edits = 200;
+            Random editRandom = new Random(2);
+            long opening = 0;
+            long closing = 0;
+            for (int i = 0; i < edits; i++) {
+                int x = 1 + editRandom.nextInt(size);
+                int y = 1 + editRandom.nextInt(size);
+                for (boolean wall : new boolean[] {!grid[x][y], grid[x][y]}) {
+                    long start = System.nanoTime();
+                    graph.setWall(x, y, wall);
+                    if (wall) closing += System.nanoTime() - start;
+                    else opening += System.nanoTime() - start;
+                }
+            }
+            // now change the grid as well, blocking the paths and opening walls in turn, and check every search
+            // again after each change
+            int checked = 20;
+            for (int i = 0; i < checked; i++) {
+                int x;
+                int y;
+                if (i % 2 == 0) {
+                    int q = 4 * editRandom.nextInt(queries.length / 4);
+                    BreadthFirstSearch bfs = new BreadthFirstSearch(grid, queries[q], queries[q + 1],
+                            queries[q + 2], queries[q + 3], context);
+                    bfs.run();
+                    int[] path = bfs.path();
+                    if (path.length < 3) continue;
+                    int cell = path[1 + editRandom.nextInt(path.length - 2)];
+                    x = cell / grid[0].length;
+                    y = cell % grid[0].length;
+                } else {
+                    do {
+                        x = 1 + editRandom.nextInt(size);
+                        y = 1 + editRandom.nextInt(size);
+                    } while (!grid[x][y]);
+                }
+                grid[x][y] = !grid[x][y];
+                graph.setWall(x, y, grid[x][y]);
+                checkCorridors(grid, graph, queries, context);
+            }
+            System.out.printf("%-8s %s%n", names[m], graph);
+            System.out.printf("         build %7.2f ms, open a wall %7.1f us (1/%.0f of a build), add a wall %7.1f us"
+                            + " | BFS %8.2f ms %9d expanded | A* %8.2f ms %9d expanded | corridors %8.2f ms %7d "
+                            + "expanded%n",
+                    build / 1e6, opening / 1e3 / edits, (double) build * edits / opening, closing / 1e3 / edits,
+                    times[0] / 1e6, expanded[0], times[1] / 1e6, expanded[1], times[2] / 1e6, expanded[2]);
+        }
+    }
+
+    /**
+     * Checks that corridor searches find paths as long as the ones breadth first search finds. Searches with an end
+     * on a wall are skipped.
+     * @param grid the grid, which the graph must match
+     * @param graph the corridor graph of the grid
+     * @param queries start x, start y, destination x and destination y of each search
+     * @param context scratch space for the searches
+     * @throws IllegalStateException if a path has a different length
+     */
+    private static void checkCorridors(boolean[][] grid, CorridorGraph graph, int[] queries, SearchContext context) {
+        for (int q = 0; q < queries.length; q += 4) {
+            if (grid[queries[q]][queries[q + 1]] || grid[queries[q + 2]][queries[q + 3]]) continue;
+            BreadthFirstSearch bfs = new BreadthFirstSearch(grid, queries[q], queries[q + 1], queries[q + 2],
+                    queries[q + 3], context);
+            bfs.run();
+            int length = bfs.path().length;
+            CorridorSearch corridors = new CorridorSearch(grid, graph, queries[q], queries[q + 1], queries[q + 2],
+                    queries[q + 3], context);
+            corridors.run();
+            if (corridors.path().length != length) {
+                throw new IllegalStateException("Corridor search gave a path of " + corridors.path().length
+                        + " squares instead of " + length + " from " + queries[q] + ", " + queries[q + 1] + " to "
+                        + queries[q + 2] + ", " + queries[q + 3]);
+            }
+        }
+    }
+
+    /**
+     * Compares breadth first search and A* square by square with searching the edges of empty rectangles, on open
+     * maps where most of the squares can be skipped. Breadth first search needs every step to cost the same, so with
+     * rectangles it becomes A* with no estimate. Every path is checked against breadth first search. On maps where
+     * too few squares are skipped, the rectangles are ignored, so A* goes square by square and breadth first search
+     * stays as it is.
+     */
+    private static void rectangles() {
+        System.out.println("== Rectangular symmetry reduction, 1024x1024, 20 searches between random open squares ==");
+        int size = 1024;
+        String[] names = {"empty", "2% walls", "10% walls", "caves"};
+        for (int m = 0; m < names.length; m++) {
+            boolean[][] grid = switch (m) {
+                case 0 -> emptyGrid(size, size);
+                case 1 -> randomGrid(size, size, 0.02, 1);
+                case 2 -> randomGrid(size, size, 0.1, 1);
+                default -> {
+                    boolean[][] caves = emptyGrid(size, size);
+                    new CaveGenerator().generate(caves, 1);
+                    yield caves;
+                }
+            };
+            int[] queries = openPairs(grid, 20, new Random(1));
+            long build = time(() -> new RectangleDecomposition(grid), 1, 3);
+            RectangleDecomposition rectangles = new RectangleDecomposition(grid);
+            SearchContext context = new SearchContext(grid.length * grid[0].length);
+            long[] expanded = new long[4];
+            long[] times = new long[4];
+            for (int a = 0; a < 4; a++) {
+                int algorithm = a;
+                Runnable r = () -> {
+                    for (int q = 0; q < queries.length; q += 4) {
+                        int x1 = queries[q];
+                        int y1 = queries[q + 1];
+                        int x2 = queries[q + 2];
+                        int y2 = queries[q + 3];
+                        SearchAlgorithm search = switch (algorithm) {
+                            case 0 -> new BreadthFirstSearch(grid, x1, y1, x2, y2, context);
+                            // without rectangles every step costs the same again, so the closest squares can be
+                            // searched first with a plain queue
+                            case 1 -> rectangles.isWorthUsing()
+                                    ? new AStar(grid, x1, y1, x2, y2, Heuristic.NONE, rectangles, context)
+                                    : new BreadthFirstSearch(grid, x1, y1, x2, y2, context);
+                            case 2 -> new AStar(grid, x1, y1, x2, y2, Heuristic.MANHATTAN, context);
+                            default -> new AStar(grid, x1, y1, x2, y2, Heuristic.MANHATTAN, rectangles, context);
+                        };
+                        expanded[algorithm] += expansions(search);
+                    }
+                };
+                times[a] = time(r, 1, 3);
+                expanded[a] = 0;
+                r.run();
+            }
+            // every search has to find a path as long as the one breadth first search finds
+            for (int q = 0; q < queries.length; q += 4) {
+                int x1 = queries[q];
+                int y1 = queries[q + 1];
+                int x2 = queries[q + 2];
+                int y2 = queries[q + 3];
+                BreadthFirstSearch bfs = new BreadthFirstSearch(grid, x1, y1, x2, y2, context);
+                bfs.run();
+                int length = bfs.path().length;
+                for (Heuristic heuristic : new Heuristic[] {Heuristic.NONE, Heuristic.MANHATTAN}) {
+                    AStar search = new AStar(grid, x1, y1, x2, y2, heuristic, rectangles, context);
+                    search.run();
+                    if (search.path().length != length) {
+                        throw new IllegalStateException("Rectangles gave a path of " + search.path().length
+                                + " squares instead of " + length + " from " + x1 + ", " + y1 + " to " + x2 + ", "
+                                + y2);
+                    }
+                }
+            }
+            System.out.printf("%-9s %s, built in %.2f ms%s%n", names[m], rectangles, build / 1e6,
+                    rectangles.isWorthUsing() ? "" : ", too few skipped to use");
+            System.out.printf("          BFS %8.2f ms %8d expanded | rectangles, no estimate %8.2f ms %8d expanded%n",
+                    times[0] / 1e6, expanded[0], times[1] / 1e6, expanded[1]);
+            System.out.printf("          A*  %8.2f ms %8d expanded | rectangles, A*          %8.2f ms %8d expanded%n",
+                    times[2] / 1e6, expanded[2], times[3] / 1e6, expanded[3]);
+        }
+    }
+
+    /**
+     * Measures how much recording a search to a trace file slows it down, how large the file is, and how fast it plays
+     * back, with breadth first search and A* between two random squares on a 2048x2048 grid with a quarter of the
+     * squares filled with walls
+     */
+    private static void trace() throws IOException {
+        System.out.println("== Search traces, 2048x2048 with 25% walls ==");
+        int size = 2048;
+        boolean[][] grid = randomGrid(size, size, 0.25, 1);
+        int[] ends = openPairs(grid, 1, new Random(1));
+        int x1 = ends[0];
+        int y1 = ends[1];
+        int x2 = ends[2];
+        int y2 = ends[3];
+        SearchContext context = new SearchContext(grid.length * grid[0].length);
+        Path file = Files.createTempFile("search", ".trace");
+        for (int a = 0; a < 2; a++) {
+            String name = a == 0 ? "BFS" : "A*";
+            int algorithm = a;
+            Supplier<SearchAlgorithm> search = () -> algorithm == 0
+                    ? new BreadthFirstSearch(grid, x1, y1, x2, y2, context)
+                    : new AStar(grid, x1, y1, x2, y2, Heuristic.MANHATTAN, context);
+            long[] expanded = new long[1];
+            long plain = time(() -> expanded[0] = expansions(search.get()));
+            long recorded = time(() -> {
+                try (TraceWriter writer = new TraceWriter(file, name, grid, x1, y1, x2, y2)) {
+                    writer.record(search.get());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            long replayed = time(() -> {
+                try {
+                    run(new TraceReplay(grid, new TraceReader(file)));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            System.out.printf("%-3s %8d expanded | search %8.2f ms | recorded %8.2f ms (%+5.1f%%) %5.2f bytes/square"
+                            + " | replay %8.2f ms%n",
+                    name, expanded[0], plain / 1e6, recorded / 1e6, (recorded - plain) * 100.0 / plain,
+                    (double) Files.size(file) / expanded[0], replayed / 1e6);
+        }
+        Files.delete(file);
+    }
+
+    /**
+     * Compares each of A*, greedy search, breadth first search, and depth first search alone with racing all four, on
+     * open maps, random walls, mazes, and caves. Each race runs on as many threads as there are algorithms, so on a
+     * machine with fewer cores the algorithms share them.
+     */
+    private static void portfolio() {
+        System.out.println("== Portfolio search, 20 searches between random open squares ==");
+        AlgorithmType[] algorithms = {AlgorithmType.A_STAR, AlgorithmType.GREEDY, AlgorithmType.BFS, AlgorithmType.DFS};
+        PortfolioSearch portfolio = new PortfolioSearch(algorithms);
+        String[] names = {"empty", "30% walls", "dfs maze", "caves"};
+        int size = 511;
+        for (int m = 0; m < names.length; m++) {
+            boolean[][] grid = switch (m) {
+                case 0 -> emptyGrid(size, size);
+                case 1 -> randomGrid(size, size, 0.3, 1);
+                case 2 -> {
+                    boolean[][] maze = emptyGrid(size, size);
+                    MazeGenerator.dfsMaze(maze, new Random(1));
+                    yield maze;
+                }
+                default -> {
+                    boolean[][] caves = emptyGrid(size, size);
+                    new CaveGenerator().generate(caves, 1);
+                    yield caves;
+                }
+            };
+            int[] queries = openPairs(grid, 20, new Random(1));
+            SearchContext context = new SearchContext(grid.length * grid[0].length);
+            StringBuilder line = new StringBuilder(String.format("%-9s", names[m]));
+            for (AlgorithmType algorithm : algorithms) {
+                long t = time(() -> {
+                    for (int q = 0; q < queries.length; q += 4) {
+                        int x1 = queries[q];
+                        int y1 = queries[q + 1];
+                        int x2 = queries[q + 2];
+                        int y2 = queries[q + 3];
+                        run(switch (algorithm) {
+                            case A_STAR -> new AStar(grid, x1, y1, x2, y2, Heuristic.MANHATTAN, context);
+                            case GREEDY -> new Greedy(grid, x1, y1, x2, y2, context);
+                            case BFS -> new BreadthFirstSearch(grid, x1, y1, x2, y2, context);
+                            default -> new DepthFirstSearch(grid, x1, y1, x2, y2, context);
+                        });
+                    }
+                }, 1, 3);
+                line.append(String.format(" | %-6s %7.2f ms", algorithm.getName(), t / 1e6));
+            }
+            System.out.println(line);
+            for (PortfolioSearch.Policy policy : PortfolioSearch.Policy.values()) {
+                long t = time(() -> {
+                    for (int q = 0; q < queries.length; q += 4) {
+                        try {
+                            portfolio.search(grid, queries[q], queries[q + 1], queries[q + 2], queries[q + 3], policy);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                }, 1, 3);
+                System.out.printf("          portfolio %-13s %7.2f ms, wins so far %s%n", policy, t / 1e6,
+                        portfolio.getWins(TraceWriter.mapHash(grid)));
+            }
+        }
+        portfolio.shutdown();
+    }
+
+    /**
+     * Checks that updating a flow field after a wall is added or removed gives the same distances as building it
+     * again, and compares how long each takes. On small maps every square is turned into a wall and back, one at a
+     * time, which includes the squares next to the destination. On a large map random squares are toggled and left
+     * that way, so the changes pile up.
+     * @throws IllegalStateException if an updated field is wrong
+     */
+    private static void flowFields() {
+        System.out.println("== Flow field updates ==");
+        String[] names = {"empty", "25% walls", "braided", "caves"};
+        for (int size : new int[] {63, 511}) {
+            for (int m = 0; m < names.length; m++) {
+                boolean[][] grid = switch (m) {
+                    case 0 -> emptyGrid(size, size);
+                    case 1 -> randomGrid(size, size, 0.25, 1);
+                    case 2 -> {
+                        boolean[][] maze = emptyGrid(size, size);
+                        Random random = new Random(1);
+                        MazeGenerator.kruskalMaze(maze, random);
+                        for (int x = 1; x <= size; x++) {
+                            for (int y = 1 + x % 2; y <= size; y += 2) {
+                                if (random.nextInt(10) == 0) maze[x][y] = false;
+                            }
+                        }
+                        yield maze;
+                    }
+                    default -> {
+                        boolean[][] caves = emptyGrid(size, size);
+                        new CaveGenerator().generate(caves, 1);
+                        yield caves;
+                    }
+                };
+                int[] dest = openPairs(grid, 1, new Random(1));
+                FlowField field = new FlowField(grid, dest[0], dest[1]);
+                Random random = new Random(2);
+                int edits = 0;
+                int wrong = 0;
+                long updateTime = 0;
+                long buildTime = 0;
+                for (int i = 0; size < 100 ? i < size * size : i < 2000; i++) {
+                    int x = size < 100 ? 1 + i / size : 1 + random.nextInt(size);
+                    int y = size < 100 ? 1 + i % size : 1 + random.nextInt(size);
+                    if (field.goesTo(x, y)) continue;
+                    // on the small maps each square is put back, so the next one starts from the same map
+                    for (int pass = 0; pass < (size < 100 ? 2 : 1); pass++) {
+                        grid[x][y] = !grid[x][y];
+                        long start = System.nanoTime();
+                        field.update(x, y);
+                        long middle = System.nanoTime();
+                        FlowField fresh = new FlowField(grid, dest[0], dest[1]);
+                        updateTime += middle - start;
+                        buildTime += System.nanoTime() - middle;
+                        edits++;
+                        if (!sameDistances(grid, field, fresh)) {
+                            wrong++;
+                            field = fresh;
+                        }
+                    }
+                }
+                System.out.printf("%4dx%-4d %-9s %6d edits, %3d wrong | update %8.2f us | build %8.2f us%n",
+                        size, size, names[m], edits, wrong, updateTime / 1e3 / edits, buildTime / 1e3 / edits);
+                if (wrong > 0) throw new IllegalStateException(wrong + " updated flow fields were wrong");
+            }
+        }
+    }
+
+    /**
+     * Checks whether two flow fields on the same grid have the same distance to the destination from every square.
+     * Their directions can differ where two ways are equally short.
+     */
+    private static boolean sameDistances(boolean[][] grid, FlowField a, FlowField b) {
+        for (int x = 0; x < grid.length; x++) {
+            for (int y = 0; y < grid[0].length; y++) {
+                if (!grid[x][y] && a.distance(x, y) != b.distance(x, y)) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Picks random pairs of squares in the largest connected open area of a grid
+     * @param grid the grid
+     * @param pairs number of pairs to pick
+     * @param random the random number generator to use
+     * @return the pairs, as start x, start y, destination x, destination y, one after another
+     */
+    private static int[] openPairs(boolean[][] grid, int pairs, Random random) {
+        int height = grid[0].length;
+        int[] area = new int[grid.length * height];
+        int[] largest = new int[0];
+        int largestSize = 0;
+        boolean[] seen = new boolean[area.length];
+        for (int i = 0; i < area.length; i++) {
+            if (seen[i] || grid[i / height][i % height]) continue;
+            // flood fill the open area from this square
+            int count = 0;
+            seen[i] = true;
+            area[count++] = i;
+            for (int head = 0; head < count; head++) {
+                int cell = area[head];
+                for (int n : new int[] {cell - height, cell - 1, cell + 1, cell + height}) {
+                    if (!seen[n] && !grid[n / height][n % height]) {
+                        seen[n] = true;
+                        area[count++] = n;
+                    }
+                }
+            }
+            if (count > largestSize) {
+                largest = Arrays.copyOf(area, count);
+                largestSize = count;
+            }
+        }
+        int[] result = new int[pairs * 4];
+        for (int i = 0; i < result.length; i += 2) {
+            int cell = largest[random.nextInt(largestSize)];
+            result[i] = cell / height;
+            result[i + 1] = cell % height;
+        }
+        return result;
+    }
+
+    /**
+     * Runs a search algorithm until it is done, counting the squares it expands
+     * @param algorithm the algorithm to run
+     * @return number of squares expanded
+     */
+    private static long expansions(SearchAlgorithm algorithm) {
+        int[] visited = new int[4096];
+        long count = 0;
+        int n;
+        while ((n = algorithm.next(visited, visited.length)) > 0) count += n;
+        return count;
+    }
+
+    /**
+     * Fills a grid with one of the generators in {@link MazeGenerator}
+     * @param generator 0 for random walls, 1 for depth first search, 2 for Kruskal, and 3 for Eller
+     */
+    private static void generate(int generator, boolean[][] grid, Random random) {
+        switch (generator) {
+            case 0 -> MazeGenerator.fillRandom(grid, 0.3, random);
+            case 1 -> MazeGenerator.dfsMaze(grid, random);
+            case 2 -> MazeGenerator.kruskalMaze(grid, random);
+            default -> MazeGenerator.ellerMaze(grid, random);
+        }
+    }
+
+    /**
+     * Counts the bytes allocated on this thread while something runs
+     * @param r the thing to run
+     * @return the bytes allocated, or -1 if the JVM cannot count them
+     */
+    private static long allocatedBytes(Runnable r) {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads)) return -1;
+        long before = threads.getCurrentThreadAllocatedBytes();
+        r.run();
+        return threads.getCurrentThreadAllocatedBytes() - before;
+    }
+
+    /**
+     * Measures the most heap in use while something runs. The peak of each memory pool is added up, and the pools
+     * can peak at different times, so this can be a little more than the heap ever held at once.
+     * @param r the thing to run
+     * @return the peak heap, in bytes
+     */
+    private static long peakHeap(Runnable r) {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        }
+        r.run();
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+        }
+        return peak;
+    }
+
+    /**
+     * Runs a search algorithm until it is done
+     * @param algorithm the algorithm to run
+     * @return true if the destination was reached
+     */
+    private static boolean run(SearchAlgorithm algorithm) {
+        return algorithm.run() == SearchStatus.SUCCEEDED;
+    }
+
+    /**
+     * Makes a grid with no walls except the border
+     * @param width width of the grid, not including the border
+     * @param height height of the grid, not including the border
+     * @return the grid
+     */
+    static boolean[][] emptyGrid(int width, int height) {
+        boolean[][] grid = new boolean[width + 2][height + 2];
+        for (int i = 0; i < width + 2; i++) {
+            grid[i][0] = true;
+            grid[i][height + 1] = true;
+        }
+        for (int i = 0; i < height + 2; i++) {
+            grid[0][i] = true;
+            grid[width + 1][i] = true;
+        }
+        return grid;
+    }
+
+    /**
+     * Makes a grid with walls on the border and in random squares inside it
+     * @param width width of the grid, not including the border
+     * @param height height of the grid, not including the border
+     * @param density the chance that each square inside is a wall
+     * @param seed seed for the random walls, so the same grid can be made again
+     * @return the grid
+     */
+    static boolean[][] randomGrid(int width, int height, double density, long seed) {
+        boolean[][] grid = emptyGrid(width, height);
+        Random random = new Random(seed);
+        for (int i = 1; i <= width; i++) {
+            for (int j = 1; j <= height; j++) {
+                grid[i][j] = random.nextDouble() < density;
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Times how long something takes to run
+     * @param r the thing to run
+     * @return the median time of the timed runs, in nanoseconds
+     */
+    private static long time(Runnable r) {
+        return time(r, WARMUP_RUNS, TIMED_RUNS);
+    }
+
+    /**
+     * Times how long something takes to run, with fewer runs for things that are slow
+     * @param r the thing to run
+     * @param warmups number of runs before timing it
+     * @param runs number of timed runs
+     * @return the median time of the timed runs, in nanoseconds
+     */
+    private static long time(Runnable r, int warmups, int runs) {
+        for (int i = 0; i < warmups; i++) r.run();
+        long[] times = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            r.run();
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return times[runs / 2];
+    }
+}
@@ -0,0 +1,277 @@
+package com.company;
+
+import java.util.Arrays;
+
+/**
+ * Breadth first search that works on 64 squares at a time. Each row of the grid is stored as a bitset, with bit x of
+ * the row set for square (x, y). The next layer of the search is every open, unvisited square next to the current
+ * layer, which can be found for a whole row with a few shifts and ORs instead of looking at each square one by one.
+ * <p>
+ * This does not keep track of how each square was reached, so it cannot retrace a path. It is meant for questions
+ * about the whole grid: which squares can be reached, how far away each square is, and how far away the destination
+ * is. The walls are copied when this is made, so a new one should be made after the walls change.
+ * @see BreadthFirstSearch
+ */
+public class BitParallelBreadthFirstSearch {
+
+    /**
+     * Called with each layer of the search
+     */
+    @FunctionalInterface
+    public interface LayerVisitor {
+        /**
+         * Looks at one layer of the search
+         * @param distance distance of every square in the layer from the start
+         * @param layer the squares in the layer, one bitset per row. Bit x of row y is bit {@code x % 64} of
+         *              {@code layer[y * getWordsPerRow() + x / 64]}. This is reused for the next layer, so it should
+         *              not be kept or modified.
+         * @param firstRow first row that can have squares in the layer
+         * @param lastRow last row that can have squares in the layer
+         * @return false to stop the search
+         */
+        boolean visit(int distance, long[] layer, int firstRow, int lastRow);
+    }
+
+    /**
+     * Width of the grid, including the border
+     */
+    private final int width;
+
+    /**
+     * Height of the grid, including the border
+     */
+    private final int height;
+
+    /**
+     * Number of longs in each row
+     */
+    private final int words;
+
+    /**
+     * Bit set for every open square. All the bitsets are stored one row after another in a single array.
+     */
+    private final long[] open;
+
+    /**
+     * Squares that have been reached in the current search
+     */
+    private final long[] visited;
+
+    /**
+     * The current layer
+     */
+    private long[] frontier;
+
+    /**
+     * Where the next layer is built
+     */
+    private long[] nextFrontier;
+
+    /**
+     * First word of each row of the current layer that can have bits set. A row has no bits set if this is larger
+     * than {@link #lastWord}.
+     */
+    private int[] firstWord;
+
+    /**
+     * Last word of each row of the current layer that can have bits set
+     */
+    private int[] lastWord;
+
+    /**
+     * {@link #firstWord} for the next layer
+     */
+    private int[] nextFirstWord;
+
+    /**
+     * {@link #lastWord} for the next layer
+     */
+    private int[] nextLastWord;
+
+    /**
+     * Copies the walls of the grid into bitsets
+     * @param grid the grid, true if there is a wall. The edges of the grid must be walls.
+     */
+    public BitParallelBreadthFirstSearch(boolean[][] grid) {
+        width = grid.length;
+        height = grid[0].length;
+        words = (width + 63) >>> 6;
+        open = new long[height * words];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                if (!grid[x][y]) open[y * words + (x >>> 6)] |= 1L << x;
+            }
+        }
+        visited = new long[height * words];
+        frontier = new long[height * words];
+        nextFrontier = new long[height * words];
+        firstWord = new int[height];
+        lastWord = new int[height];
+        nextFirstWord = new int[height];
+        nextLastWord = new int[height];
+    }
+
+    /**
+     * @return the number of longs used for each row of a layer
+     */
+    public int getWordsPerRow() {
+        return words;
+    }
+
+    /**
+     * Searches outwards from a square one layer at a time, until there are no more squares to reach or the visitor
+     * stops the search
+     * @param x x coordinate of the square to start from
+     * @param y y coordinate of the square to start from
+     * @param visitor called with each layer, starting with the layer that only holds the start
+     * @return the number of layers visited
+     */
+    public int forEachLayer(int x, int y, LayerVisitor visitor) {
+        Arrays.fill(visited, 0);
+        Arrays.fill(frontier, 0);
+        Arrays.fill(nextFrontier, 0);
+        Arrays.fill(firstWord, words);
+        Arrays.fill(lastWord, -1);
+        Arrays.fill(nextFirstWord, words);
+        Arrays.fill(nextLastWord, -1);
+        int start = y * words + (x >>> 6);
+        if ((open[start] & 1L << x) == 0) return 0;
+        frontier[start] = 1L << x;
+        visited[start] = 1L << x;
+        firstWord[y] = lastWord[y] = x >>> 6;
+        // only rows between low and high (inclusive) can have squares in the layer
+        int low = y;
+        int high = y;
+        int distance = 0;
+        while (visitor.visit(distance, frontier, low, high)) {
+            distance++;
+            int nextLow = Integer.MAX_VALUE;
+            int nextHigh = -1;
+            // the edges of the grid are walls, so the first and last rows never have open squares
+            int from = Math.max(low - 1, 1);
+            int to = Math.min(high + 1, height - 2);
+            for (int row = from; row <= to; row++) {
+                // the next layer of this row can only be next to the words set in this row and the rows beside it
+                int first = firstWord[row];
+                int last = lastWord[row];
+                if (firstWord[row - 1] < first) first = firstWord[row - 1];
+                if (firstWord[row + 1] < first) first = firstWord[row + 1];
+                if (lastWord[row - 1] > last) last = lastWord[row - 1];
+                if (lastWord[row + 1] > last) last = lastWord[row + 1];
+                if (first > last) continue;
+                // a bit can move into the word before or after through a shift
+                if (first > 0) first--;
+                if (last < words - 1) last++;
+                int base = row * words;
+                int nextFirst = words;
+                int nextLast = -1;
+                for (int w = first; w <= last; w++) {
+                    int i = base + w;
+                    long c = frontier[i];
+                    // shift left and right to get the squares beside the layer, and OR in the rows above and below
+                    long grown = c << 1 | c >>> 1 | frontier[i - words] | frontier[i + words];
+                    // carry the bits that were shifted out of the words beside this one
+                    if (w > 0) grown |= frontier[i - 1] >>> 63;
+                    if (w < words - 1) grown |= frontier[i + 1] << 63;
+                    long n = grown & open[i] & ~visited[i];
+                    if (n != 0) {
+                        nextFrontier[i] = n;
+                        visited[i] |= n;
+                        if (nextFirst == words) nextFirst = w;
+                        nextLast = w;
+                    }
+                }
+                nextFirstWord[row] = nextFirst;
+                nextLastWord[row] = nextLast;
+                if (nextLast != -1) {
+                    if (row < nextLow) nextLow = row;
+                    nextHigh = row;
+                }
+            }
+            // the old layer is no longer needed, and its ranges become the empty ranges for the layer after next
+            for (int row = low; row <= high; row++) {
+                int base = row * words;
+                for (int w = firstWord[row]; w <= lastWord[row]; w++) {
+                    frontier[base + w] = 0;
+                }
+                firstWord[row] = words;
+                lastWord[row] = -1;
+            }
+            long[] temp = frontier;
+            frontier = nextFrontier;
+            nextFrontier = temp;
+            int[] tempWord = firstWord;
+            firstWord = nextFirstWord;
+            nextFirstWord = tempWord;
+            tempWord = lastWord;
+            lastWord = nextLastWord;
+            nextLastWord = tempWord;
+            if (nextHigh == -1) break;
+            low = nextLow;
+            high = nextHigh;
+        }
+        return distance;
+    }
+
+    /**
+     * Finds the length of the shortest path between two squares
+     * @param x1 x coordinate of the start
+     * @param y1 y coordinate of the start
+     * @param x2 x coordinate of the destination
+     * @param y2 y coordinate of the destination
+     * @return the length of the shortest path, or -1 if the destination cannot be reached
+     */
+    public int distance(int x1, int y1, int x2, int y2) {
+        int target = y2 * words + (x2 >>> 6);
+        long bit = 1L << x2;
+        int[] result = {-1};
+        forEachLayer(x1, y1, (distance, layer, firstRow, lastRow) -> {
+            if ((layer[target] & bit) != 0) {
+                result[0] = distance;
+                return false;
+            }
+            return true;
+        });
+        return result[0];
+    }
+
+    /**
+     * Finds every square that can be reached from a square
+     * @param x x coordinate of the start
+     * @param y y coordinate of the start
+     * @return one bitset per row, with bit x of row y set if square (x, y) can be reached
+     */
+    public long[][] reachable(int x, int y) {
+        forEachLayer(x, y, (distance, layer, firstRow, lastRow) -> true);
+        long[][] rows = new long[height][];
+        for (int i = 0; i < height; i++) {
+            rows[i] = Arrays.copyOfRange(visited, i * words, (i + 1) * words);
+        }
+        return rows;
+    }
+
+    /**
+     * Finds the distance from a square to every other square
+     * @param x x coordinate of the start
+     * @param y y coordinate of the start
+     * @return the distance to every square, stored at index {@code x * height + y}, or -1 if it cannot be reached
+     */
+    public int[] distances(int x, int y) {
+        int[] result = new int[width * height];
+        Arrays.fill(result, -1);
+        forEachLayer(x, y, (distance, layer, firstRow, lastRow) -> {
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int w = firstWord[row]; w <= lastWord[row]; w++) {
+                    long bits = layer[row * words + w];
+                    while (bits != 0) {
+                        int col = w << 6 | Long.numberOfTrailingZeros(bits);
+                        result[col * height + row] = distance;
+                        bits &= bits - 1;
+                    }
+                }
+            }
+            return true;
+        });
+        return result;
+    }
+}
@@ -1,38 +1,86 @@
 package com.company;
 
 import java.awt.*;
-import java.util.Queue;
-import java.util.ArrayDeque;
 
 /**
  * Searches all closer nodes before searching farther nodes. Guarantees the shortest path.
+ * <p>
+ * It can also start from many squares at once and stop at whichever of many goals is closest to any of them, which
+ * answers a query such as "the nearest of these targets" with one search instead of one per target. Every step costs
+ * the same, so this is also what Dijkstra's algorithm would do on this grid.
  */
 public class BreadthFirstSearch extends SearchAlgorithm {
 
-    Queue<State> q = new ArrayDeque<>();
-    boolean[][] visited;
+    /**
+     * Squares waiting to be searched. Each square is only added once, so it never needs more room than the grid.
+     */
+    private final int[] q;
+    private int head;
+    private int tail;
+    private final SearchContext context;
 
     public BreadthFirstSearch(boolean[][] grid, int startX, int startY, int endX, int endY) {
+        this(grid, startX, startY, endX, endY, new SearchContext(grid.length * grid[0].length));
+    }
+
+    /**
+     * Creates a search that reuses the scratch space of an earlier one
+     * @param context the scratch space, which must not be in use by another search
+     */
+    public BreadthFirstSearch(boolean[][] grid, int startX, int startY, int endX, int endY, SearchContext context) {
         super(grid, startX, startY, endX, endY);
-        visited = new boolean[grid.length][grid[0].length];
-        q.add(new State(new Point(startX, startY), null));
+        this.context = context;
+        context.begin(grid.length * height);
+        q = context.queue;
+        add(startX * height + startY, -1);
+    }
+
+    /**
+     * Creates a search from many starts to many goals, which finds the shortest path from any start to any goal
+     * @param starts the squares to start from
+     * @param goals the squares to stop at, at least one
+     * @param context the scratch space, which must not be in use by another search
+     */
+    public BreadthFirstSearch(boolean[][] grid, Point[] starts, Point[] goals, SearchContext context) {
+        super(grid, goals);
+        this.context = context;
+        context.begin(grid.length * height);
+        q = context.queue;
+        for (Point start : starts) {
+            add(start.x * height + start.y, -1);
+        }
     }
 
+    /**
+     * Searches the next square in the queue
+     * @return index of the square, or -1 if the search ended
+     */
     @Override
-    public Point next() {
-        State curr = q.remove();
-        Point currPoint = curr.point;
-        if (currPoint.equals(dest)) {
-            notDone = false;
-            currentState = curr;
+    protected int step() {
+        if (!beginStep()) return -1;
+        if (head == tail) {
+            end(SearchStatus.UNREACHABLE);
+            return -1;
+        }
+        int curr = q[head++];
+        if (isGoal(curr)) {
+            finish(pathTo(curr, context.parents));
         } else {
-            applyLambdaToNeighbors(currPoint.x, currPoint.y, (x, y) -> {
-                if (!visited[x][y]) {
-                    q.add(new State(new Point(x, y), curr));
-                    visited[x][y] = true;
-                }
-            });
+            int x = curr / height;
+            int y = curr - x * height;
+            if (!grid[x-1][y]) add(curr - height, curr);
+            if (!grid[x][y-1]) add(curr - 1, curr);
+            if (!grid[x][y+1]) add(curr + 1, curr);
+            if (!grid[x+1][y]) add(curr + height, curr);
+        }
+        return curr;
+    }
+
+    private void add(int cell, int parent) {
+        if (!context.isSeen(cell)) {
+            context.see(cell);
+            context.parents[cell] = parent;
+            q[tail++] = cell;
         }
-        return currPoint;
     }
 }
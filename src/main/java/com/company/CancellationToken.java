@@ -0,0 +1,25 @@
+package com.company;
+
+/**
+ * Lets a search be stopped from another thread. The same token can be given to many searches to stop all of them at
+ * once.
+ * @see SearchAlgorithm#setCancellationToken(CancellationToken)
+ */
+public class CancellationToken {
+
+    private volatile boolean cancelled;
+
+    /**
+     * Asks every search using this token to stop. The searches notice within a few steps.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return whether {@link #cancel()} has been called
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
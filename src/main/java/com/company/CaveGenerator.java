@@ -0,0 +1,309 @@
+package com.company;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fills grids with open, cave-like maps. The grid starts out as random walls, which are then smoothed a few times
+ * with a cellular automaton: a wall stays a wall if at least 3 of the 8 squares around it are walls, and an open
+ * square becomes a wall if at least 6 of them are (the rule B678/S345678, with walls as the live cells). Squares
+ * outside the border count as walls, so the caves close up against the edges.
+ * <p>
+ * Each column of the grid is packed into bits, 64 squares to a long. Instead of counting the neighbors of each square
+ * one at a time, a whole long of squares is counted at once: the 8 neighbors of 64 squares are 8 longs, which are
+ * added up with bitwise full adders into 4 longs that hold the bits of each count. Columns are packed rather than
+ * rows, so the results can be copied straight into the columns of the grid.
+ * <p>
+ * The columns are split into bands, and each band is filled and smoothed on its own thread. Every band has its own
+ * random number generator, split from the seed in order, so the same seed always gives the same map no matter how
+ * many threads there are.
+ */
+public class CaveGenerator {
+
+    /**
+     * Chance that a square starts out as a wall, which gives caves that are mostly open but still connected
+     */
+    public static final double DEFAULT_DENSITY = 0.45;
+
+    /**
+     * Number of times the walls are smoothed, after which the caves hardly change any more
+     */
+    public static final int DEFAULT_PASSES = 4;
+
+    /**
+     * Number of columns in each band
+     */
+    private static final int BAND_COLUMNS = 128;
+
+    /**
+     * Number of random longs combined to make each long of starting walls. The chance of a wall is rounded to a
+     * multiple of 1 over 2 to the power of this.
+     */
+    private static final int DENSITY_BITS = 8;
+
+    /**
+     * The threads to generate with
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a generator that uses the common fork join pool
+     */
+    public CaveGenerator() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a generator
+     * @param pool the threads to generate with
+     */
+    public CaveGenerator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Fills the grid with caves, using the default density and number of passes
+     * @param grid the grid to fill. Only the squares inside the border are changed.
+     * @param seed seed for the random walls, so the same map can be made again
+     */
+    public void generate(boolean[][] grid, long seed) {
+        generate(grid, DEFAULT_DENSITY, DEFAULT_PASSES, seed);
+    }
+
+    /**
+     * Fills the grid with caves
+     * @param grid the grid to fill. Only the squares inside the border are changed.
+     * @param density the chance that a square starts out as a wall
+     * @param passes number of times to smooth the walls
+     * @param seed seed for the random walls, so the same map can be made again
+     */
+    public void generate(boolean[][] grid, double density, int passes, long seed) {
+        Bits bits = new Bits(grid.length, grid[0].length);
+        int width = grid.length - 2;
+        int bands = (width + BAND_COLUMNS - 1) / BAND_COLUMNS;
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] randoms = new SplittableRandom[bands];
+        for (int b = 0; b < bands; b++) {
+            randoms[b] = root.split();
+        }
+        long threshold = Math.round(Math.min(Math.max(density, 0), 1) * (1 << DENSITY_BITS));
+        forEachBand(bands, width, (b, from, to) -> bits.fill(from, to, threshold, randoms[b]));
+        for (int pass = 0; pass < passes; pass++) {
+            forEachBand(bands, width, (b, from, to) -> bits.smooth(from, to));
+            bits.swap();
+        }
+        forEachBand(bands, width, (b, from, to) -> bits.copyTo(grid, from, to));
+    }
+
+    /**
+     * Work done on one band of columns
+     */
+    private interface BandTask {
+        /**
+         * @param band index of the band
+         * @param from first column of the band
+         * @param to column after the last one in the band
+         */
+        void run(int band, int from, int to);
+    }
+
+    /**
+     * Runs something on every band of columns inside the border, splitting the bands between threads
+     * @param bands number of bands
+     * @param width number of columns inside the border
+     * @param task the work to do on each band
+     */
+    private void forEachBand(int bands, int width, BandTask task) {
+        if (bands == 1 || pool.getParallelism() == 1) {
+            for (int b = 0; b < bands; b++) {
+                task.run(b, 1 + b * BAND_COLUMNS, 1 + Math.min(width, (b + 1) * BAND_COLUMNS));
+            }
+            return;
+        }
+        RecursiveAction[] tasks = new RecursiveAction[bands];
+        for (int b = 0; b < bands; b++) {
+            int band = b;
+            tasks[b] = new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    task.run(band, 1 + band * BAND_COLUMNS, 1 + Math.min(width, (band + 1) * BAND_COLUMNS));
+                }
+            };
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(tasks);
+            }
+        });
+    }
+
+    /**
+     * The walls of the grid packed into bits, with a second copy to write the next pass into. Bit {@code y} of
+     * column {@code x} is bit {@code y % 64} of the long at {@code x * words + y / 64}, and it is set if the square
+     * is a wall. The border is always walls, and the unused bits after the border are always clear.
+     */
+    private static final class Bits {
+
+        private final int height;
+        private final int words;
+        private long[] current;
+        private long[] next;
+
+        /**
+         * Makes bits for a grid with walls in the first and last columns. The columns in between are left for
+         * {@link #fill} and {@link #smooth} to write.
+         * @param width width of the grid, including the border
+         * @param height height of the grid, including the border
+         */
+        Bits(int width, int height) {
+            this.height = height;
+            words = (height + 63) >>> 6;
+            current = new long[width * words];
+            next = new long[width * words];
+            for (int i = 0; i < words; i++) {
+                current[i] = next[i] = usedBits(i);
+                current[(width - 1) * words + i] = next[(width - 1) * words + i] = usedBits(i);
+            }
+        }
+
+        /**
+         * @param i index of a long in a column
+         * @return the bits of the long that are in the grid
+         */
+        private long usedBits(int i) {
+            int bits = Math.min(64, height - i * 64);
+            return bits == 64 ? -1L : (1L << bits) - 1;
+        }
+
+        /**
+         * Makes one long of a column into a border at the top and bottom of the grid
+         * @param i index of the long in the column
+         * @param w the long
+         * @return the long with the border set and the unused bits cleared
+         */
+        private long withBorder(int i, long w) {
+            if (i == 0) w |= 1;
+            if (i == (height - 1) >>> 6) w |= 1L << (height - 1);
+            return w & usedBits(i);
+        }
+
+        /**
+         * Fills columns with random walls
+         * @param from first column
+         * @param to column after the last one
+         * @param threshold chance of a wall, times 2 to the power of {@link #DENSITY_BITS}
+         * @param random random number generator of the band
+         */
+        void fill(int from, int to, long threshold, SplittableRandom random) {
+            for (int x = from; x < to; x++) {
+                for (int i = 0; i < words; i++) {
+                    long w;
+                    if (threshold >= 1 << DENSITY_BITS) {
+                        w = -1L;
+                    } else {
+                        // each random long sets or clears half of the bits that are left, going from the lowest bit
+                        // of the threshold to the highest, so each bit ends up set with a chance of the threshold
+                        w = 0;
+                        for (int bit = 0; bit < DENSITY_BITS; bit++) {
+                            long r = random.nextLong();
+                            w = (threshold >>> bit & 1) != 0 ? w | r : w & r;
+                        }
+                    }
+                    current[x * words + i] = withBorder(i, w);
+                }
+            }
+        }
+
+        /**
+         * Smooths columns once, reading the current walls and writing the next ones
+         * @param from first column
+         * @param to column after the last one
+         */
+        void smooth(int from, int to) {
+            long[] src = current;
+            long[] dst = next;
+            for (int x = from; x < to; x++) {
+                int left = (x - 1) * words;
+                int mid = x * words;
+                int right = (x + 1) * words;
+                for (int i = 0; i < words; i++) {
+                    long l = src[left + i];
+                    long c = src[mid + i];
+                    long r = src[right + i];
+                    // squares above each square are the bits shifted up by one, carrying the top bit of the long
+                    // before, and squares below are shifted down by one, carrying the bottom bit of the long after
+                    long lUp = l << 1;
+                    long cUp = c << 1;
+                    long rUp = r << 1;
+                    long lDown = l >>> 1;
+                    long cDown = c >>> 1;
+                    long rDown = r >>> 1;
+                    if (i > 0) {
+                        lUp |= src[left + i - 1] >>> 63;
+                        cUp |= src[mid + i - 1] >>> 63;
+                        rUp |= src[right + i - 1] >>> 63;
+                    }
+                    if (i + 1 < words) {
+                        lDown |= src[left + i + 1] << 63;
+                        cDown |= src[mid + i + 1] << 63;
+                        rDown |= src[right + i + 1] << 63;
+                    }
+                    // add up the 8 neighbors, bit by bit, into ones + 2 * twos + 4 * fours + 8 * eights
+                    long s1 = lUp ^ l ^ lDown;
+                    long c1 = (lUp & l) | (lDown & (lUp ^ l));
+                    long s2 = rUp ^ r ^ rDown;
+                    long c2 = (rUp & r) | (rDown & (rUp ^ r));
+                    long s3 = cUp ^ cDown;
+                    long c3 = cUp & cDown;
+                    long ones = s1 ^ s2 ^ s3;
+                    long c4 = (s1 & s2) | (s3 & (s1 ^ s2));
+                    long t = c1 ^ c2 ^ c3;
+                    long c5 = (c1 & c2) | (c3 & (c1 ^ c2));
+                    long twos = t ^ c4;
+                    long c6 = t & c4;
+                    long fours = c5 ^ c6;
+                    long eights = c5 & c6;
+                    long atLeast3 = eights | fours | (twos & ones);
+                    long atLeast6 = eights | (fours & twos);
+                    dst[mid + i] = withBorder(i, atLeast6 | (c & atLeast3));
+                }
+            }
+        }
+
+        /**
+         * Swaps the current and next walls after a pass
+         */
+        void swap() {
+            long[] temp = current;
+            current = next;
+            next = temp;
+        }
+
+        /**
+         * Copies the current walls of some columns into the grid, not including the border
+         * @param grid the grid to copy into
+         * @param from first column
+         * @param to column after the last one
+         */
+        void copyTo(boolean[][] grid, int from, int to) {
+            for (int x = from; x < to; x++) {
+                boolean[] column = grid[x];
+                int base = x * words;
+                // the border is left alone, so the first long starts at the second bit and the last stops early
+                for (int i = 0; i < words; i++) {
+                    long w = current[base + i];
+                    int y = Math.max(1, i << 6);
+                    int end = Math.min(height - 1, (i + 1) << 6);
+                    w >>>= y;
+                    for (; y < end; y++) {
+                        column[y] = (w & 1) != 0;
+                        w >>>= 1;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.company;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A priority queue of square indexes, ordered by a long key with the smallest key first. The keys and squares are
+ * kept in two arrays that make up a binary heap, so adding a square does not create an object the way a
+ * {@link java.util.PriorityQueue} does.
+ */
+public class CellHeap {
+
+    private long[] keys;
+    private int[] cells;
+    private int size;
+
+    /**
+     * Creates an empty heap
+     * @param capacity number of entries to make room for at first; the heap grows if more are added
+     */
+    public CellHeap(int capacity) {
+        keys = new long[Math.max(capacity, 1)];
+        cells = new int[keys.length];
+    }
+
+    /**
+     * Adds a square
+     * @param key the priority, smallest first
+     * @param cell index of the square
+     */
+    public void add(long key, int cell) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            cells = Arrays.copyOf(cells, size * 2);
+        }
+        // sift up
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[parent] <= key) break;
+            keys[i] = keys[parent];
+            cells[i] = cells[parent];
+            i = parent;
+        }
+        keys[i] = key;
+        cells[i] = cell;
+    }
+
+    /**
+     * Removes the square with the smallest key
+     * @return index of the square
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public int remove() {
+        if (size == 0) throw new NoSuchElementException();
+        int top = cells[0];
+        long key = keys[--size];
+        int cell = cells[size];
+        // sift down
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && keys[child + 1] < keys[child]) child++;
+            if (key <= keys[child]) break;
+            keys[i] = keys[child];
+            cells[i] = cells[child];
+            i = child;
+        }
+        keys[i] = key;
+        cells[i] = cell;
+        return top;
+    }
+
+    /**
+     * @return the square with the smallest key
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public int peek() {
+        if (size == 0) throw new NoSuchElementException();
+        return cells[0];
+    }
+
+    /**
+     * @return the smallest key
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public long peekKey() {
+        if (size == 0) throw new NoSuchElementException();
+        return keys[0];
+    }
+
+    /**
+     * @return whether the heap is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the number of squares in the heap
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets an entry by its place in the heap's arrays, to look through every entry in no particular order
+     * @param i the place, from 0 to {@link #size()} - 1
+     * @return index of the square
+     */
+    int cellAt(int i) {
+        return cells[i];
+    }
+
+    /**
+     * Gets the key of an entry by its place in the heap's arrays
+     * @param i the place, from 0 to {@link #size()} - 1
+     * @return the key
+     */
+    long keyAt(int i) {
+        return keys[i];
+    }
+
+    /**
+     * Removes every square, keeping the arrays to be reused
+     */
+    public void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,336 @@
+package com.company;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * A compressed path database, storing the first step of a shortest path from every square to every other square.
+ * Once built, a path can be followed one step at a time without doing any search, which is much faster when the
+ * walls rarely change and many paths are needed.
+ * <p>
+ * For every source square, the first moves to all the targets are listed in order of the target's index
+ * ({@code x * height + y}), and neighboring targets with the same first move are stored as one run. Walls and
+ * squares that cannot be reached do not need a first move, so they are merged into whichever run is next to them.
+ * Each run is one int: the index of the first target in the run, shifted left by two, plus the direction.
+ * <p>
+ * The database can be saved to a file, and loaded again by memory mapping the file, so it does not need to be read
+ * into the heap.
+ * @see MoveTableWalk
+ */
+public class CompressedPathDatabase implements MoveTable {
+
+    /**
+     * Number written at the start of a saved database, to recognize the file
+     */
+    private static final int MAGIC = 0x43504431; // "CPD1"
+
+    /**
+     * Number of ints written before the tables in a saved database: magic, width, height, and number of runs
+     */
+    private static final int HEADER_INTS = 4;
+
+    /**
+     * Width of the grid, including the border
+     */
+    private final int width;
+
+    /**
+     * Height of the grid, including the border
+     */
+    private final int height;
+
+    /**
+     * Id of the connected area each square is in, or -1 for walls. Two squares can only reach each other if the ids
+     * are the same.
+     */
+    private final IntBuffer components;
+
+    /**
+     * Where the runs for each source square start in {@link #runs}. The runs for source i end where the runs for
+     * source i + 1 start.
+     */
+    private final IntBuffer rowOffsets;
+
+    /**
+     * The runs of all the source squares, one after another
+     */
+    private final IntBuffer runs;
+
+    /**
+     * How long building the database took, in nanoseconds, or 0 if it was loaded from a file
+     */
+    private final long buildNanos;
+
+    private CompressedPathDatabase(int width, int height, IntBuffer components, IntBuffer rowOffsets,
+                                   IntBuffer runs, long buildNanos) {
+        this.width = width;
+        this.height = height;
+        this.components = components;
+        this.rowOffsets = rowOffsets;
+        this.runs = runs;
+        this.buildNanos = buildNanos;
+    }
+
+    /**
+     * Builds the database using every core
+     * @param grid the grid, true if there is a wall
+     * @return the database
+     */
+    public static CompressedPathDatabase build(boolean[][] grid) {
+        return build(grid, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Builds the database by doing a breadth first search from every open square. The searches are split between
+     * threads.
+     * @param grid the grid, true if there is a wall. It should not change while the database is built.
+     * @param threads number of threads to use
+     * @return the database
+     */
+    public static CompressedPathDatabase build(boolean[][] grid, int threads) {
+        long start = System.nanoTime();
+        int width = grid.length;
+        int height = grid[0].length;
+        int cells = width * height;
+        int[] components = labelComponents(grid);
+        int[][] rows = new int[cells][];
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.submit(() -> IntStream.range(0, cells).parallel().forEach(source -> {
+                if (components[source] != -1) rows[source] = compressRow(grid, source);
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while building path database", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not build path database", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        // put all the rows one after another
+        int[] rowOffsets = new int[cells + 1];
+        for (int i = 0; i < cells; i++) {
+            rowOffsets[i + 1] = rowOffsets[i] + (rows[i] == null ? 0 : rows[i].length);
+        }
+        int[] runs = new int[rowOffsets[cells]];
+        for (int i = 0; i < cells; i++) {
+            if (rows[i] != null) System.arraycopy(rows[i], 0, runs, rowOffsets[i], rows[i].length);
+        }
+        return new CompressedPathDatabase(width, height, IntBuffer.wrap(components), IntBuffer.wrap(rowOffsets),
+                IntBuffer.wrap(runs), System.nanoTime() - start);
+    }
+
+    /**
+     * Gives every connected area of open squares its own id
+     * @param grid the grid
+     * @return the id of every square, -1 for walls
+     */
+    private static int[] labelComponents(boolean[][] grid) {
+        int height = grid[0].length;
+        int[] components = new int[grid.length * height];
+        Arrays.fill(components, -1);
+        int[] queue = new int[components.length];
+        int next = 0;
+        for (int i = 0; i < components.length; i++) {
+            if (components[i] != -1 || grid[i / height][i % height]) continue;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = i;
+            components[i] = next;
+            while (head < tail) {
+                int curr = queue[head++];
+                int x = curr / height;
+                int y = curr % height;
+                for (int d = 0; d < 4; d++) {
+                    int nx = x + Direction.X[d];
+                    int ny = y + Direction.Y[d];
+                    int n = nx * height + ny;
+                    if (!grid[nx][ny] && components[n] == -1) {
+                        components[n] = next;
+                        queue[tail++] = n;
+                    }
+                }
+            }
+            next++;
+        }
+        return components;
+    }
+
+    /**
+     * Does a breadth first search from one square and compresses the first moves to every target
+     * @param grid the grid
+     * @param source index of the square to search from
+     * @return the runs for the source
+     */
+    private static int[] compressRow(boolean[][] grid, int source) {
+        int height = grid[0].length;
+        int cells = grid.length * height;
+        // first move to every square, -1 if not reached yet
+        byte[] moves = new byte[cells];
+        Arrays.fill(moves, (byte) -1);
+        int[] queue = new int[cells];
+        int head = 0;
+        int tail = 0;
+        int sx = source / height;
+        int sy = source % height;
+        for (int d = 0; d < 4; d++) {
+            int nx = sx + Direction.X[d];
+            int ny = sy + Direction.Y[d];
+            if (!grid[nx][ny]) {
+                int n = nx * height + ny;
+                moves[n] = (byte) d;
+                queue[tail++] = n;
+            }
+        }
+        // the source itself does not need a move, but it should not be searched again
+        moves[source] = 4;
+        while (head < tail) {
+            int curr = queue[head++];
+            int x = curr / height;
+            int y = curr % height;
+            for (int d = 0; d < 4; d++) {
+                int nx = x + Direction.X[d];
+                int ny = y + Direction.Y[d];
+                int n = nx * height + ny;
+                if (!grid[nx][ny] && moves[n] == -1) {
+                    // the first move is the same as the square it was reached from
+                    moves[n] = moves[curr];
+                    queue[tail++] = n;
+                }
+            }
+        }
+        // run length encode, letting squares without a move join any run
+        int[] row = queue; // the queue is not needed anymore, and there are never more runs than squares
+        int count = 0;
+        int current = -1;
+        for (int target = 0; target < cells; target++) {
+            int move = moves[target];
+            if (move < 0 || move > 3 || move == current) continue;
+            // the first run starts at 0, so targets before it are covered
+            int runStart = count == 0 ? 0 : target;
+            row[count++] = runStart << 2 | move;
+            current = move;
+        }
+        return Arrays.copyOf(row, count);
+    }
+
+    @Override
+    public int firstMove(int x1, int y1, int x2, int y2) {
+        int source = x1 * height + y1;
+        int target = x2 * height + y2;
+        if (source == target || components.get(source) == -1 || components.get(source) != components.get(target)) {
+            return -1;
+        }
+        // binary search for the last run that starts at or before the target
+        int low = rowOffsets.get(source);
+        int high = rowOffsets.get(source + 1) - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (runs.get(mid) >>> 2 <= target) low = mid;
+            else high = mid - 1;
+        }
+        return runs.get(low) & 3;
+    }
+
+    /**
+     * Saves the database to a file, which can later be opened with {@link #load(Path)}
+     * @param file the file to write to
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.nativeOrder());
+            buffer.putInt(MAGIC).putInt(width).putInt(height).putInt(runs.limit());
+            for (IntBuffer table : new IntBuffer[] {components, rowOffsets, runs}) {
+                for (int i = 0; i < table.limit(); i++) {
+                    if (!buffer.hasRemaining()) {
+                        buffer.flip();
+                        while (buffer.hasRemaining()) channel.write(buffer);
+                        buffer.clear();
+                    }
+                    buffer.putInt(table.get(i));
+                }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+    }
+
+    /**
+     * Opens a database saved with {@link #save(Path)}. The file is memory mapped rather than read, so opening it is
+     * fast and the tables do not take up heap space.
+     * @param file the file to open
+     * @return the database
+     * @throws IOException if the file cannot be read or is not a path database
+     */
+    public static CompressedPathDatabase load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(ByteOrder.nativeOrder());
+            if (mapped.getInt(0) != MAGIC) throw new IOException("Not a path database: " + file);
+            int width = mapped.getInt(4);
+            int height = mapped.getInt(8);
+            int runCount = mapped.getInt(12);
+            int cells = width * height;
+            IntBuffer all = mapped.position(HEADER_INTS * Integer.BYTES).slice().order(ByteOrder.nativeOrder())
+                    .asIntBuffer();
+            if (all.limit() != cells + cells + 1 + runCount) throw new IOException("Truncated path database: " + file);
+            IntBuffer components = all.duplicate().position(0).limit(cells).slice();
+            IntBuffer rowOffsets = all.duplicate().position(cells).limit(cells + cells + 1).slice();
+            IntBuffer runs = all.duplicate().position(cells + cells + 1).slice();
+            return new CompressedPathDatabase(width, height, components, rowOffsets, runs, 0);
+        }
+    }
+
+    /**
+     * Checks whether the database was built for a grid of the same size
+     * @param grid the grid
+     * @return true if the width and height match
+     */
+    public boolean matches(boolean[][] grid) {
+        return grid.length == width && grid[0].length == height;
+    }
+
+    /**
+     * @return the total number of runs
+     */
+    public int getRunCount() {
+        return runs.limit();
+    }
+
+    /**
+     * @return the number of bytes the tables take
+     */
+    public long sizeInBytes() {
+        return ((long) components.limit() + rowOffsets.limit() + runs.limit() + HEADER_INTS) * Integer.BYTES;
+    }
+
+    /**
+     * @return how long building the database took in nanoseconds, or 0 if it was loaded from a file
+     */
+    public long getBuildNanos() {
+        return buildNanos;
+    }
+
+    @Override
+    public String toString() {
+        int sources = 0;
+        for (int i = 0; i < components.limit(); i++) {
+            if (components.get(i) != -1) sources++;
+        }
+        return String.format("%dx%d map: %d runs (%.1f per square), %d bytes, built in %.2f ms",
+                width, height, getRunCount(), sources == 0 ? 0.0 : (double) getRunCount() / sources,
+                sizeInBytes(), buildNanos / 1e6);
+    }
+}
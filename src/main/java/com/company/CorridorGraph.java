@@ -0,0 +1,575 @@
+package com.company;
+
+import java.util.Arrays;
+
+/**
+ * A smaller graph made from a grid by removing dead ends and collapsing corridors, for {@link CorridorSearch}. In a
+ * maze nearly every open square is part of a corridor with only two ways out, so searching the maze square by square
+ * mostly walks down corridors one step at a time. This graph lets a search jump from one end of a corridor to the
+ * other in one step.
+ * <p>
+ * The graph is built in two stages:
+ * <ol>
+ *     <li>Dead-end filling. Open squares with at most one open neighbor are removed, over and over, until every
+ *     square left has at least two. Removed squares are <em>dead</em>: each one remembers the square it was removed
+ *     next to, which leads back towards the rest of the map, so the removed squares make trees hanging off the
+ *     squares that are left. A path only enters a dead square if it starts or ends inside the tree. A maze with no
+ *     loops is removed entirely, leaving a single tree.</li>
+ *     <li>Contraction. Squares that are left with exactly two live neighbors are corridor squares, and the rest are
+ *     <em>nodes</em>. Each chain of corridor squares between two nodes is stored once, as a corridor with its two
+ *     ends and its length, and each corridor square knows its corridor and how far it is from the first end. A loop
+ *     with no nodes on it gets one square made into a node, so every corridor has ends.</li>
+ * </ol>
+ * The graph keeps its own copy of the walls, and {@link #setWall} changes one square and rebuilds only what the
+ * change can affect: adding a wall removes the squares that become dead ends, and removing one brings back only the
+ * dead squares between it and the live squares or tops of the trees next to it. Corridors are rebuilt only where a
+ * square on them or at their ends changed.
+ */
+public class CorridorGraph {
+
+    /**
+     * A wall
+     */
+    static final byte WALL = 0;
+
+    /**
+     * An open square removed by dead-end filling
+     */
+    static final byte DEAD = 1;
+
+    /**
+     * A live square with two live neighbors, which is part of a corridor
+     */
+    static final byte CORRIDOR = 2;
+
+    /**
+     * A live square at the end of corridors
+     */
+    static final byte NODE = 3;
+
+    /**
+     * Width of the grid, including the border
+     */
+    private final int width;
+
+    /**
+     * Height of the grid, including the border, used to turn coordinates into an index
+     */
+    final int height;
+
+    /**
+     * Amount to add to an index to move one square in each {@link Direction}
+     */
+    final int[] offsets;
+
+    /**
+     * What each square is: {@link #WALL}, {@link #DEAD}, {@link #CORRIDOR}, or {@link #NODE}
+     */
+    final byte[] kinds;
+
+    /**
+     * For a dead square, the square it was removed next to, or -1 if it was the last square of its tree. For a
+     * corridor square, the corridor it is part of, or -1 while it is being rebuilt.
+     */
+    final int[] links;
+
+    /**
+     * For a corridor square, the number of steps from the first end of its corridor
+     */
+    final int[] steps;
+
+    /**
+     * The two ends of each corridor, at {@code 2 * id} and {@code 2 * id + 1}
+     */
+    private int[] ends = new int[32];
+
+    /**
+     * The direction from each end of a corridor to the first square of the corridor, stored like {@link #ends}
+     */
+    private byte[] endDirections = new byte[32];
+
+    /**
+     * Number of steps from one end of each corridor to the other
+     */
+    private int[] lengths = new int[16];
+
+    /**
+     * Corridor ids that are not in use, so they can be given out again
+     */
+    private int[] freeIds = new int[16];
+    private int freeCount;
+
+    /**
+     * Number of corridor ids ever given out
+     */
+    private int idCount;
+
+    /**
+     * Squares waiting to be checked for dead ends
+     */
+    private int[] stack = new int[64];
+    private int stackSize;
+
+    /**
+     * Squares whose corridor needs to be rebuilt
+     */
+    private int[] work = new int[64];
+    private int workSize;
+
+    /**
+     * Dead squares being brought back after a wall was removed
+     */
+    private int[] region = new int[64];
+    private int regionSize;
+
+    /**
+     * Number of changes made so far
+     */
+    private long version;
+
+    /**
+     * Builds the graph
+     * @param grid the grid, true if there is a wall. The edges of the grid must be walls.
+     */
+    public CorridorGraph(boolean[][] grid) {
+        width = grid.length;
+        height = grid[0].length;
+        offsets = new int[] {-height, -1, 1, height};
+        kinds = new byte[width * height];
+        links = new int[kinds.length];
+        steps = new int[kinds.length];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                int cell = x * height + y;
+                if (!grid[x][y]) {
+                    kinds[cell] = CORRIDOR;
+                    links[cell] = -1;
+                }
+            }
+        }
+        for (int cell = 0; cell < kinds.length; cell++) {
+            if (kinds[cell] == CORRIDOR && liveDegree(cell) <= 1) push(cell);
+        }
+        peel();
+        // nothing was assigned yet, so every live square is checked below rather than the work list, which can be
+        // let go of along with the stack, since they may have grown to the size of the grid
+        workSize = 0;
+        work = new int[64];
+        stack = new int[64];
+        for (int cell = 0; cell < kinds.length; cell++) {
+            classify(cell);
+        }
+        for (int cell = 0; cell < kinds.length; cell++) {
+            connect(cell);
+        }
+    }
+
+    /**
+     * Changes one square and rebuilds the parts of the graph the change affects. When a wall is removed, a new loop
+     * can only go through the square and the dead squares each of its dead neighbors leads back through, so only
+     * those are brought back and filled again. The rest of each tree keeps hanging off them as it did.
+     * @param x x coordinate of the square, which must not be on the edge of the grid
+     * @param y y coordinate of the square, which must not be on the edge of the grid
+     * @param wall whether the square should be a wall
+     * @return true if the square changed
+     */
+    public boolean setWall(int x, int y, boolean wall) {
+        int cell = x * height + y;
+        if (wall == (kinds[cell] == WALL)) return false;
+        workSize = 0;
+        if (wall) {
+            boolean live = kinds[cell] != DEAD;
+            if (live) detach(cell);
+            for (int d = 0; d < 4; d++) {
+                int n = cell + offsets[d];
+                if (kinds[n] == DEAD && links[n] == cell) {
+                    // the tree below this square no longer leads anywhere
+                    links[n] = -1;
+                } else if (live && kinds[n] >= CORRIDOR) {
+                    detach(n);
+                    push(n);
+                }
+            }
+            kinds[cell] = WALL;
+            peel();
+        } else {
+            kinds[cell] = CORRIDOR;
+            links[cell] = -1;
+            addWork(cell);
+            push(cell);
+            regionSize = 0;
+            for (int d = 0; d < 4; d++) {
+                int n = cell + offsets[d];
+                if (kinds[n] == DEAD) reviveBranch(n);
+                else if (kinds[n] >= CORRIDOR) detach(n);
+            }
+            // the new square may join the branches into a loop, or join live squares through them, so fill them
+            // again with it
+            for (int i = 0; i < regionSize; i++) {
+                int r = region[i];
+                for (int d = 0; d < 4; d++) {
+                    int n = r + offsets[d];
+                    if (kinds[n] >= CORRIDOR) detach(n);
+                }
+                push(r);
+            }
+            peel();
+        }
+        for (int i = 0; i < workSize; i++) {
+            classify(work[i]);
+        }
+        for (int i = 0; i < workSize; i++) {
+            connect(work[i]);
+        }
+        version++;
+        return true;
+    }
+
+    /**
+     * Makes a dead square live again, along with the squares it leads back through, up to the first live square or
+     * the last square of its tree
+     * @param cell index of the dead square
+     */
+    private void reviveBranch(int cell) {
+        while (cell != -1 && kinds[cell] == DEAD) {
+            int parent = links[cell];
+            revive(cell);
+            cell = parent;
+        }
+    }
+
+    /**
+     * Makes a dead square live again, to be filled again after a wall next to its tree was removed
+     * @param cell index of the square
+     */
+    private void revive(int cell) {
+        kinds[cell] = CORRIDOR;
+        links[cell] = -1;
+        addWork(cell);
+        if (regionSize == region.length) region = Arrays.copyOf(region, regionSize * 2);
+        region[regionSize++] = cell;
+    }
+
+    /**
+     * Removes dead ends, starting with the squares on the stack, until every live square has two live neighbors
+     */
+    private void peel() {
+        while (stackSize > 0) {
+            int cell = stack[--stackSize];
+            if (kinds[cell] < CORRIDOR) continue;
+            int parent = -1;
+            int degree = 0;
+            for (int d = 0; d < 4; d++) {
+                int n = cell + offsets[d];
+                if (kinds[n] >= CORRIDOR) {
+                    degree++;
+                    parent = n;
+                }
+            }
+            if (degree > 1) continue;
+            detach(cell);
+            if (parent != -1) {
+                detach(parent);
+                push(parent);
+            }
+            kinds[cell] = DEAD;
+            links[cell] = parent;
+        }
+    }
+
+    /**
+     * Removes a live square from the corridors it is on, before it or one of its neighbors changes. The square and
+     * the squares of the removed corridors are added to the work list, to be put into corridors again afterwards.
+     * @param cell index of the square
+     */
+    private void detach(int cell) {
+        if (kinds[cell] == NODE) {
+            for (int d = 0; d < 4; d++) {
+                int n = cell + offsets[d];
+                if (kinds[n] == CORRIDOR && links[n] >= 0) deleteCorridor(links[n]);
+            }
+            kinds[cell] = CORRIDOR;
+            links[cell] = -1;
+            addWork(cell);
+        } else if (kinds[cell] == CORRIDOR) {
+            if (links[cell] >= 0) deleteCorridor(links[cell]);
+            else addWork(cell);
+        }
+    }
+
+    /**
+     * Removes a corridor, leaving its squares live but not part of any corridor
+     * @param id the corridor
+     */
+    private void deleteCorridor(int id) {
+        int cell = ends[2 * id] + offsets[endDirections[2 * id]];
+        for (int k = 1; k < lengths[id]; k++) {
+            links[cell] = -1;
+            addWork(cell);
+            if (k + 1 < lengths[id]) {
+                for (int d = 0; d < 4; d++) {
+                    int n = cell + offsets[d];
+                    if (kinds[n] == CORRIDOR && links[n] == id && steps[n] == k + 1) {
+                        cell = n;
+                        break;
+                    }
+                }
+            }
+        }
+        if (freeCount == freeIds.length) freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        freeIds[freeCount++] = id;
+    }
+
+    /**
+     * Makes a live square that is not part of a corridor into a node if it does not have exactly two live neighbors
+     * @param cell index of the square
+     */
+    private void classify(int cell) {
+        if (kinds[cell] == CORRIDOR && links[cell] == -1 && liveDegree(cell) != 2) kinds[cell] = NODE;
+    }
+
+    /**
+     * Builds the corridors that start at a node, or the corridor through a corridor square that is not part of one
+     * @param cell index of the square
+     */
+    private void connect(int cell) {
+        if (kinds[cell] == NODE) {
+            for (int d = 0; d < 4; d++) {
+                int n = cell + offsets[d];
+                if (kinds[n] == CORRIDOR && links[n] == -1) buildCorridor(cell, d);
+            }
+        } else if (kinds[cell] == CORRIDOR && links[cell] == -1) {
+            // walk one way to find the node at that end
+            int first = 0;
+            while (kinds[cell + offsets[first]] < CORRIDOR) first++;
+            int prev = cell;
+            int curr = cell + offsets[first];
+            while (kinds[curr] == CORRIDOR && curr != cell) {
+                int next = nextInCorridor(curr, prev);
+                prev = curr;
+                curr = next;
+            }
+            if (curr == cell) {
+                // a loop with no nodes, so this square becomes one
+                kinds[cell] = NODE;
+                buildCorridor(cell, first);
+            } else {
+                buildCorridor(curr, directionTo(curr, prev));
+            }
+        }
+    }
+
+    /**
+     * Walks from a node through corridor squares to the node at the other end, and stores the corridor
+     * @param node index of the node to start from
+     * @param direction direction from the node to the first corridor square
+     */
+    private void buildCorridor(int node, int direction) {
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            id = idCount++;
+            if (id == lengths.length) {
+                lengths = Arrays.copyOf(lengths, id * 2);
+                ends = Arrays.copyOf(ends, id * 4);
+                endDirections = Arrays.copyOf(endDirections, id * 4);
+            }
+        }
+        int prev = node;
+        int curr = node + offsets[direction];
+        int k = 1;
+        while (kinds[curr] != NODE) {
+            links[curr] = id;
+            steps[curr] = k++;
+            int next = nextInCorridor(curr, prev);
+            prev = curr;
+            curr = next;
+        }
+        ends[2 * id] = node;
+        ends[2 * id + 1] = curr;
+        endDirections[2 * id] = (byte) direction;
+        endDirections[2 * id + 1] = (byte) directionTo(curr, prev);
+        lengths[id] = k;
+    }
+
+    /**
+     * @param cell index of a corridor square
+     * @param prev index of the live neighbor the walk came from
+     * @return index of the other live neighbor
+     */
+    int nextInCorridor(int cell, int prev) {
+        for (int d = 0; d < 4; d++) {
+            int n = cell + offsets[d];
+            if (n != prev && kinds[n] >= CORRIDOR) return n;
+        }
+        throw new IllegalStateException("Corridor square " + cell + " has no way on");
+    }
+
+    /**
+     * @param from index of a square
+     * @param to index of a neighbor of the square
+     * @return the direction from the square to the neighbor
+     */
+    int directionTo(int from, int to) {
+        int d = 0;
+        while (from + offsets[d] != to) d++;
+        return d;
+    }
+
+    /**
+     * @param cell index of a square
+     * @return number of live neighbors of the square
+     */
+    private int liveDegree(int cell) {
+        int degree = 0;
+        for (int d = 0; d < 4; d++) {
+            if (kinds[cell + offsets[d]] >= CORRIDOR) degree++;
+        }
+        return degree;
+    }
+
+    private void push(int cell) {
+        if (stackSize == stack.length) stack = Arrays.copyOf(stack, stackSize * 2);
+        stack[stackSize++] = cell;
+    }
+
+    private void addWork(int cell) {
+        if (workSize == work.length) work = Arrays.copyOf(work, workSize * 2);
+        work[workSize++] = cell;
+    }
+
+    /**
+     * @param cell index of a square
+     * @return whether the square is a corridor square or a node
+     */
+    boolean isLive(int cell) {
+        return kinds[cell] >= CORRIDOR;
+    }
+
+    /**
+     * Gets the node at the other end of the edge that leaves a node in some direction
+     * @param node index of the node
+     * @param direction the direction to leave in
+     * @return index of the node at the other end, or -1 if there is no live square that way
+     */
+    int edgeEnd(int node, int direction) {
+        int n = node + offsets[direction];
+        if (kinds[n] == NODE) return n;
+        if (kinds[n] != CORRIDOR) return -1;
+        int id = links[n];
+        return ends[2 * id] == node && endDirections[2 * id] == direction ? ends[2 * id + 1] : ends[2 * id];
+    }
+
+    /**
+     * @param node index of a node
+     * @param direction a direction from the node that leads to a live square
+     * @return the number of steps along the edge that leaves the node in that direction
+     */
+    int edgeLength(int node, int direction) {
+        int n = node + offsets[direction];
+        return kinds[n] == NODE ? 1 : lengths[links[n]];
+    }
+
+    /**
+     * @param id a corridor
+     * @param end 0 for the first end, 1 for the other
+     * @return index of the node at that end
+     */
+    int corridorEnd(int id, int end) {
+        return ends[2 * id + end];
+    }
+
+    /**
+     * @param id a corridor
+     * @return the number of steps from one end of the corridor to the other
+     */
+    int corridorLength(int id) {
+        return lengths[id];
+    }
+
+    /**
+     * Takes one step along a corridor
+     * @param cell index of a corridor square
+     * @param towardFirst true to step towards the first end of the corridor, false to step towards the other one
+     * @return index of the next square, which is the node at the end if the square is the last one before it
+     */
+    int stepAlong(int cell, boolean towardFirst) {
+        int id = links[cell];
+        int target = steps[cell] + (towardFirst ? -1 : 1);
+        if (target == 0) return ends[2 * id];
+        if (target == lengths[id]) return ends[2 * id + 1];
+        for (int d = 0; d < 4; d++) {
+            int n = cell + offsets[d];
+            if (kinds[n] == CORRIDOR && links[n] == id && steps[n] == target) return n;
+        }
+        throw new IllegalStateException("Corridor " + id + " is broken at square " + cell);
+    }
+
+    /**
+     * @return the number of changes made with {@link #setWall} so far
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return width of the grid, including the border
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return height of the grid, including the border
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the number of open squares
+     */
+    public int getOpenCount() {
+        int count = 0;
+        for (byte kind : kinds) {
+            if (kind != WALL) count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of squares removed by dead-end filling
+     */
+    public int getDeadCount() {
+        int count = 0;
+        for (byte kind : kinds) {
+            if (kind == DEAD) count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of nodes, which is the number of squares a search of the graph can expand
+     */
+    public int getNodeCount() {
+        int count = 0;
+        for (byte kind : kinds) {
+            if (kind == NODE) count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of corridors
+     */
+    public int getCorridorCount() {
+        return idCount - freeCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("corridor graph: %d open squares, %d dead, %d nodes, %d corridors",
+                getOpenCount(), getDeadCount(), getNodeCount(), getCorridorCount());
+    }
+}
@@ -0,0 +1,399 @@
+package com.company;
+
+import java.awt.*;
+import java.util.Arrays;
+
+/**
+ * A* on a {@link CorridorGraph}, which only expands the nodes of the graph and steps over whole corridors at once.
+ * Guarantees the shortest path, which is expanded back into squares when the search is done.
+ * <p>
+ * The start and destination may be anywhere, not just on nodes:
+ * <ul>
+ *     <li>A dead square is inside a tree, so the only way out is to follow the squares it was removed next to until
+ *     reaching a live square. The search climbs up from the start and the destination one step at a time each. If
+ *     the two climbs meet, the path between them is the only path, and no nodes need to be expanded at all, which
+ *     is always the case on a maze with no loops.</li>
+ *     <li>A corridor square can only be left through the two ends of its corridor, so the search starts from both
+ *     ends, at the distance of each. The destination is reached the same way, through either end of its corridor, or
+ *     straight along the corridor if the start is on the same one.</li>
+ * </ul>
+ */
+public class CorridorSearch extends SearchAlgorithm {
+
+    /**
+     * Parent of a node reached by walking from the start towards the first end of its corridor
+     */
+    private static final int FROM_START_FIRST = -2;
+
+    /**
+     * Parent of a node reached by walking from the start towards the other end of its corridor
+     */
+    private static final int FROM_START_SECOND = -3;
+
+    private static final int INFINITY = Integer.MAX_VALUE;
+
+    private final CorridorGraph graph;
+    private final SearchContext context;
+    private final CellHeap pq;
+    private final int start;
+    private final int destIndex;
+
+    /**
+     * Squares from the start up its tree, ending with the first live square, or where the climb met the destination's
+     */
+    private int[] startChain = new int[16];
+    private int startLength;
+
+    /**
+     * Squares from the destination up its tree, like {@link #startChain}
+     */
+    private int[] destChain = new int[16];
+    private int destLength;
+
+    /**
+     * Whether the climbs out of the trees have been done
+     */
+    private boolean climbed;
+
+    /**
+     * Live square where the path leaves the start's tree, and where it enters the destination's tree
+     */
+    private int from;
+    private int to;
+
+    /**
+     * Length of the shortest path from {@link #from} to {@link #to} found so far, and how it ends: one of the nodes
+     * it reached the destination's corridor from, {@link #to} itself if it is a node, or -1 if it goes straight along
+     * one corridor
+     */
+    private int best = INFINITY;
+    private int bestNode;
+    private boolean bestFromFirstEnd;
+
+    public CorridorSearch(boolean[][] grid, CorridorGraph graph, int x1, int y1, int x2, int y2) {
+        this(grid, graph, x1, y1, x2, y2, new SearchContext(grid.length * grid[0].length));
+    }
+
+    /**
+     * Creates a search that reuses the scratch space of an earlier one
+     * @param grid the grid, which must have the same walls as the graph
+     * @param graph the graph to search
+     * @param context the scratch space, which must not be in use by another search
+     */
+    public CorridorSearch(boolean[][] grid, CorridorGraph graph, int x1, int y1, int x2, int y2,
+                          SearchContext context) {
+        super(grid, x1, y1, x2, y2);
+        this.graph = graph;
+        this.context = context;
+        context.begin(grid.length * height);
+        pq = context.heap;
+        start = x1 * height + y1;
+        destIndex = x2 * height + y2;
+    }
+
+    /**
+     * Climbs out of the trees of the start and the destination, or expands the next node
+     * @return index of the square, or -1 if the search ended
+     */
+    @Override
+    protected int step() {
+        if (!beginStep()) return -1;
+        if (!climbed) {
+            climbed = true;
+            climb();
+            return start;
+        }
+        while (!pq.isEmpty()) {
+            long key = pq.peekKey();
+            int node = pq.remove();
+            if (context.isClosed(node)) continue;
+            if (best <= (int) (key >>> 32)) break;
+            context.close(node);
+            int distance = context.distances[node];
+            reachDestination(node, distance);
+            for (int d = 0; d < 4; d++) {
+                int end = graph.edgeEnd(node, d);
+                if (end != -1) relax(end, distance + graph.edgeLength(node, d), node << 2 | d);
+            }
+            return node;
+        }
+        if (best == INFINITY) {
+            end(SearchStatus.UNREACHABLE);
+        } else {
+            finish(toStates(tracePath()));
+        }
+        return -1;
+    }
+
+    /**
+     * Climbs up the trees of the start and destination, one step each in turn, until they meet or both reach a live
+     * square. If they meet the search is done, and otherwise the search is set up to go between the live squares.
+     */
+    private void climb() {
+        if (graph.kinds[start] == CorridorGraph.WALL || graph.kinds[destIndex] == CorridorGraph.WALL) {
+            end(SearchStatus.UNREACHABLE);
+            return;
+        }
+        // each square climbed is marked with which climb it was on and how far up it was
+        startLength = add(startChain, 0, start, 0);
+        if (start == destIndex) {
+            finish(toStates(new int[] {start}));
+            return;
+        }
+        destLength = add(destChain, 0, destIndex, 1);
+        int a = start;
+        int b = destIndex;
+        while (true) {
+            boolean moved = false;
+            int up = parent(a);
+            if (up != -1) {
+                if (context.isSeen(up) && context.parents[up] == 1) {
+                    meet(up, startLength, context.distances[up]);
+                    return;
+                }
+                startLength = add(startChain, startLength, up, 0);
+                a = up;
+                moved = true;
+            }
+            up = parent(b);
+            if (up != -1) {
+                if (context.isSeen(up) && context.parents[up] == 0) {
+                    meet(up, context.distances[up], destLength);
+                    return;
+                }
+                destLength = add(destChain, destLength, up, 1);
+                b = up;
+                moved = true;
+            }
+            if (!moved) break;
+        }
+        if (!graph.isLive(a) || !graph.isLive(b)) {
+            // at least one of them is in a tree that leads nowhere else
+            end(SearchStatus.UNREACHABLE);
+            return;
+        }
+        from = a;
+        to = b;
+        // the climbs are kept in the chains, so the marks can be used for the nodes
+        context.begin(grid.length * height);
+        seedStart();
+    }
+
+    /**
+     * @param cell index of a square
+     * @return the square above it in its tree, or -1 if it is live or the top of a tree
+     */
+    private int parent(int cell) {
+        return graph.kinds[cell] == CorridorGraph.DEAD ? graph.links[cell] : -1;
+    }
+
+    /**
+     * Adds a square to one of the climbs and marks it
+     * @param side 0 for the climb from the start, 1 for the climb from the destination
+     * @return the new length of the climb
+     */
+    private int add(int[] chain, int length, int cell, int side) {
+        if (length == chain.length) {
+            chain = Arrays.copyOf(chain, length * 2);
+            if (side == 0) startChain = chain;
+            else destChain = chain;
+        }
+        chain[length] = cell;
+        context.see(cell);
+        context.parents[cell] = side;
+        context.distances[cell] = length;
+        return length + 1;
+    }
+
+    /**
+     * Ends the search with the path through the square where the two climbs met
+     * @param startLength number of squares of the start's climb before the meeting square
+     * @param destLength number of squares of the destination's climb before the meeting square
+     */
+    private void meet(int cell, int startLength, int destLength) {
+        int[] path = new int[startLength + destLength + 1];
+        System.arraycopy(startChain, 0, path, 0, startLength);
+        path[startLength] = cell;
+        for (int i = 0; i < destLength; i++) {
+            path[path.length - 1 - i] = destChain[i];
+        }
+        finish(toStates(path));
+    }
+
+    /**
+     * Adds the nodes the search starts from: {@link #from} if it is a node, or else both ends of its corridor
+     */
+    private void seedStart() {
+        if (graph.kinds[from] == CorridorGraph.NODE) {
+            relax(from, 0, -1);
+            return;
+        }
+        int id = graph.links[from];
+        int steps = graph.steps[from];
+        relax(graph.corridorEnd(id, 0), steps, FROM_START_FIRST);
+        relax(graph.corridorEnd(id, 1), graph.corridorLength(id) - steps, FROM_START_SECOND);
+        if (graph.kinds[to] == CorridorGraph.CORRIDOR && graph.links[to] == id) {
+            // both are on the same corridor, so they can be joined without leaving it
+            best = Math.abs(graph.steps[to] - steps);
+            bestNode = -1;
+        }
+    }
+
+    /**
+     * Checks whether an expanded node leads to the destination for less than the best path so far. If the
+     * destination is on a corridor, it is reached from either end of the corridor.
+     * @param node index of the node
+     * @param distance distance from {@link #from} to the node
+     */
+    private void reachDestination(int node, int distance) {
+        if (node == to) {
+            if (distance < best) {
+                best = distance;
+                bestNode = node;
+            }
+            return;
+        }
+        if (graph.kinds[to] != CorridorGraph.CORRIDOR) return;
+        int id = graph.links[to];
+        int steps = graph.steps[to];
+        if (graph.corridorEnd(id, 0) == node && distance + steps < best) {
+            best = distance + steps;
+            bestNode = node;
+            bestFromFirstEnd = true;
+        }
+        if (graph.corridorEnd(id, 1) == node && distance + graph.corridorLength(id) - steps < best) {
+            best = distance + graph.corridorLength(id) - steps;
+            bestNode = node;
+            bestFromFirstEnd = false;
+        }
+    }
+
+    /**
+     * Reaches a node, if it has not been reached by a shorter path yet
+     * @param node index of the node
+     * @param distance distance from {@link #from} to the node
+     * @param parent the node it was reached from, times 4, plus the direction of the edge it was reached along, or
+     *               one of the FROM_START constants, or -1 if it is {@link #from}
+     */
+    private void relax(int node, int distance, int parent) {
+        if (context.isSeen(node) && context.distances[node] <= distance) return;
+        context.see(node);
+        context.distances[node] = distance;
+        context.parents[node] = parent;
+        // the estimate is to where the destination's tree is entered, since that is where the search between nodes ends
+        int fScore = distance + Heuristic.MANHATTAN.estimate(node / height, node % height, to / height, to % height);
+        pq.add((long) fScore << 32 | (Integer.MAX_VALUE - distance), node);
+    }
+
+    /**
+     * Expands the best path back into squares, from the start to the destination
+     * @return index of each square of the path
+     */
+    private int[] tracePath() {
+        IntList middle = new IntList();
+        if (bestNode == -1) {
+            // straight along the corridor both are on
+            boolean towardFirst = graph.steps[to] < graph.steps[from];
+            for (int cell = from; cell != to; ) {
+                cell = graph.stepAlong(cell, towardFirst);
+                middle.add(cell);
+            }
+        } else {
+            // from the destination back to the node it was reached from
+            if (bestNode != to) {
+                for (int cell = to; cell != bestNode; ) {
+                    middle.add(cell);
+                    cell = graph.stepAlong(cell, bestFromFirstEnd);
+                }
+            }
+            // back along the edges to where the search started
+            int node = bestNode;
+            while (true) {
+                int parent = context.parents[node];
+                if (parent == -1) break;
+                if (parent < 0) {
+                    boolean towardFirst = parent == FROM_START_FIRST;
+                    middle.add(node);
+                    // walk from the start to the node, and add the squares backwards
+                    int mark = middle.size();
+                    for (int cell = graph.stepAlong(from, towardFirst); cell != node; ) {
+                        middle.add(cell);
+                        cell = graph.stepAlong(cell, towardFirst);
+                    }
+                    middle.reverseFrom(mark);
+                    break;
+                }
+                int prev = parent >> 2;
+                middle.add(node);
+                int mark = middle.size();
+                int before = prev;
+                for (int cell = prev + graph.offsets[parent & 3]; cell != node; ) {
+                    middle.add(cell);
+                    int next = graph.nextInCorridor(cell, before);
+                    before = cell;
+                    cell = next;
+                }
+                middle.reverseFrom(mark);
+                node = prev;
+            }
+            middle.reverse();
+        }
+        // the start's climb, then the middle, then the destination's climb backwards
+        int[] path = new int[startLength + middle.size() + destLength - 1];
+        System.arraycopy(startChain, 0, path, 0, startLength);
+        int[] m = middle.toArray();
+        System.arraycopy(m, 0, path, startLength, m.length);
+        for (int i = 0; i < destLength - 1; i++) {
+            path[path.length - 1 - i] = destChain[i];
+        }
+        return path;
+    }
+
+    /**
+     * Turns a path of square indexes into a chain of States
+     * @return State of the last square
+     */
+    private State toStates(int[] path) {
+        State state = null;
+        for (int cell : path) {
+            state = new State(new Point(cell / height, cell % height), state);
+        }
+        return state;
+    }
+
+    /**
+     * A growable list of ints
+     */
+    private static final class IntList {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * Reverses the values from an index to the end
+         */
+        void reverseFrom(int from) {
+            for (int i = from, j = size - 1; i < j; i++, j--) {
+                int temp = values[i];
+                values[i] = values[j];
+                values[j] = temp;
+            }
+        }
+
+        void reverse() {
+            reverseFrom(0);
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -1,8 +1,6 @@
 package com.company;
 
-import java.awt.*;
-import java.util.ArrayDeque;
-import java.util.Stack;
+import java.util.Arrays;
 
 /**
  * Searches the next node on the stack until there are no more paths. Then, it backtracks. DFS does not guarantee
@@ -10,34 +8,67 @@ import java.util.Stack;
  */
 public class DepthFirstSearch extends SearchAlgorithm {
 
-    ArrayDeque<State> locations = new ArrayDeque<>();
-    boolean[][] visited;
+    /**
+     * Squares waiting to be searched, stored as pairs: the index of the square, then the index of the square it was
+     * reached from
+     */
+    private int[] locations = new int[64];
+    private int size;
+    private final SearchContext context;
+    private final int destIndex;
+
     public DepthFirstSearch(boolean[][] g, int x1, int y1, int x2, int y2) {
+        this(g, x1, y1, x2, y2, new SearchContext(g.length * g[0].length));
+    }
+
+    /**
+     * Creates a search that reuses the scratch space of an earlier one
+     * @param context the scratch space, which must not be in use by another search
+     */
+    public DepthFirstSearch(boolean[][] g, int x1, int y1, int x2, int y2, SearchContext context) {
         super(g, x1, y1, x2, y2);
-        locations.push(new State(new Point(x1, y1), null));
-        visited = new boolean[g.length][g[0].length];
+        this.context = context;
+        context.begin(g.length * height);
+        destIndex = x2 * height + y2;
+        push(x1 * height + y1, -1);
+    }
+
+    private void push(int cell, int parent) {
+        if (size == locations.length) locations = Arrays.copyOf(locations, size * 2);
+        locations[size++] = cell;
+        locations[size++] = parent;
     }
 
+    /**
+     * Searches the square on top of the stack
+     * @return index of the square, or -1 if the search ended
+     */
     @Override
-    public Point next() {
-        State curr;
+    protected int step() {
+        if (!beginStep()) return -1;
+        int curr;
         // loop because the current one might already be visited
         do {
-            curr = locations.pop();
-        } while (visited[curr.point.x][curr.point.y]);
-        if (curr.point.equals(dest)) {
-            notDone = false;
-            currentState = curr;
+            if (size == 0) {
+                end(SearchStatus.UNREACHABLE);
+                return -1;
+            }
+            size -= 2;
+            curr = locations[size];
+        } while (context.isClosed(curr));
+        context.parents[curr] = locations[size + 1];
+        if (curr == destIndex) {
+            finish(pathTo(curr, context.parents));
         } else {
-            visited[curr.point.x][curr.point.y] = true;
-            State finalCurr = curr;
+            context.close(curr);
+            int x = curr / height;
+            int y = curr - x * height;
             // add neighbors
-            applyLambdaToNeighbors(curr.point.x, curr.point.y, (x, y) -> {
-                if (!visited[x][y]) {
-                    locations.push(new State(new Point(x, y), finalCurr));
-                }
-            });
+            if (!grid[x-1][y] && !context.isClosed(curr - height)) push(curr - height, curr);
+            if (!grid[x][y-1] && !context.isClosed(curr - 1)) push(curr - 1, curr);
+            if (!grid[x][y+1] && !context.isClosed(curr + 1)) push(curr + 1, curr);
+            if (!grid[x+1][y] && !context.isClosed(curr + height)) push(curr + height, curr);
         }
-        return curr.point;
+        return curr;
     }
 }
@@ -0,0 +1,68 @@
+package com.company;
+
+/**
+ * The four directions that can be moved in on the grid. Each direction is stored as a number between 0 and 4
+ * exclusive, in the same order that {@link SearchAlgorithm#applyLambdaToNeighbors} visits the neighbors, so a
+ * direction fits in two bits.
+ */
+public final class Direction {
+
+    /**
+     * Towards smaller x
+     */
+    public static final int LEFT = 0;
+
+    /**
+     * Towards smaller y
+     */
+    public static final int UP = 1;
+
+    /**
+     * Towards larger y
+     */
+    public static final int DOWN = 2;
+
+    /**
+     * Towards larger x
+     */
+    public static final int RIGHT = 3;
+
+    /**
+     * Table to get the change in x given a direction
+     */
+    public static final int[] X = {-1, 0, 0, 1};
+
+    /**
+     * Table to get the change in y given a direction
+     */
+    public static final int[] Y = {0, -1, 1, 0};
+
+    private Direction() {}
+
+    /**
+     * Gets the direction pointing the other way. The directions are ordered so this is just 3 minus the direction.
+     * @param direction a direction between 0 and 4 exclusive
+     * @return the opposite direction
+     */
+    public static int opposite(int direction) {
+        return 3 - direction;
+    }
+
+    /**
+     * Gets the direction of a step between two neighboring squares
+     * @param x1 x coordinate of the square to step from
+     * @param y1 y coordinate of the square to step from
+     * @param x2 x coordinate of the square to step to
+     * @param y2 y coordinate of the square to step to
+     * @return the direction, or -1 if the squares are not neighbors
+     */
+    public static int between(int x1, int y1, int x2, int y2) {
+        int dx = x2 - x1;
+        int dy = y2 - y1;
+        if (dy == 0 && dx == -1) return LEFT;
+        if (dx == 0 && dy == -1) return UP;
+        if (dx == 0 && dy == 1) return DOWN;
+        if (dy == 0 && dx == 1) return RIGHT;
+        return -1;
+    }
+}
@@ -26,7 +26,12 @@ public class DisjointSetUnion {
      * @return the parent of the node
      */
     public int get(int x) {
-        return array[x] == x ? x : (array[x] = get(array[x]));
+        // path halving, which flattens the tree like recursion would, without running out of stack on long chains
+        while (array[x] != x) {
+            array[x] = array[array[x]];
+            x = array[x];
+        }
+        return x;
     }
 
     /**
@@ -0,0 +1,247 @@
+package com.company;
+
+import java.awt.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A path stored as its start square and a list of runs. Each run is one byte: the {@link Direction} in the top two
+ * bits, and one less than the number of steps taken that way in the low six bits, so a straight line of up to 64
+ * steps takes a single byte. This is far smaller than a list of points, so many paths can be kept or sent at once.
+ * @see SearchAlgorithm#encodedPath()
+ */
+public final class EncodedPath {
+
+    /**
+     * Called for each square on a path
+     * @see #forEach(Visitor)
+     */
+    @FunctionalInterface
+    public interface Visitor {
+
+        /**
+         * Visits a square
+         * @param x x coordinate of the square
+         * @param y y coordinate of the square
+         */
+        void visit(int x, int y);
+    }
+
+    /**
+     * Most steps a single run can hold
+     */
+    private static final int MAX_RUN = 64;
+
+    private final int startX;
+    private final int startY;
+    private final byte[] runs;
+    /**
+     * Number of squares on the path, including the start
+     */
+    private final int length;
+
+    private EncodedPath(int startX, int startY, byte[] runs, int length) {
+        this.startX = startX;
+        this.startY = startY;
+        this.runs = runs;
+        this.length = length;
+    }
+
+    /**
+     * Collects steps into runs
+     */
+    private static class RunBuilder {
+        private byte[] runs = new byte[16];
+        private int count;
+        private int direction = -1;
+        private int steps;
+
+        void add(int d) {
+            if (d == direction && steps < MAX_RUN) {
+                steps++;
+                return;
+            }
+            flush();
+            direction = d;
+            steps = 1;
+        }
+
+        private void flush() {
+            if (steps == 0) return;
+            if (count == runs.length) runs = Arrays.copyOf(runs, count * 2);
+            runs[count++] = (byte) (direction << 6 | (steps - 1));
+        }
+
+        byte[] build() {
+            flush();
+            steps = 0;
+            return Arrays.copyOf(runs, count);
+        }
+    }
+
+    /**
+     * Encodes a path from the chain of states a search builds, in one pass from the destination back to the start
+     * @param goal state of the destination
+     * @return the path
+     */
+    static EncodedPath of(SearchAlgorithm.State goal) {
+        RunBuilder builder = new RunBuilder();
+        int length = 1;
+        SearchAlgorithm.State curr = goal;
+        for (SearchAlgorithm.State prev = goal.prev; prev != null; curr = prev, prev = prev.prev) {
+            int d = Direction.between(prev.point.x, prev.point.y, curr.point.x, curr.point.y);
+            if (d == -1) throw new IllegalArgumentException("Squares on the path are not next to each other");
+            builder.add(d);
+            length++;
+        }
+        // the runs were found from the destination back, so put them in order
+        byte[] runs = builder.build();
+        for (int i = 0, j = runs.length - 1; i < j; i++, j--) {
+            byte temp = runs[i];
+            runs[i] = runs[j];
+            runs[j] = temp;
+        }
+        return new EncodedPath(curr.point.x, curr.point.y, runs, length);
+    }
+
+    /**
+     * Encodes a path given as square indexes
+     * @param path index of each square on the path, from the start, as returned by {@link SearchAlgorithm#path()}
+     * @param height height of the grid, used to turn the indexes into coordinates
+     * @return the path
+     * @throws IllegalArgumentException if the path is empty or two squares in a row are not next to each other
+     */
+    public static EncodedPath of(int[] path, int height) {
+        if (path.length == 0) throw new IllegalArgumentException("Path is empty");
+        RunBuilder builder = new RunBuilder();
+        for (int i = 1; i < path.length; i++) {
+            int d = Direction.between(path[i - 1] / height, path[i - 1] % height, path[i] / height, path[i] % height);
+            if (d == -1) {
+                throw new IllegalArgumentException("Squares " + (i - 1) + " and " + i + " are not next to each other");
+            }
+            builder.add(d);
+        }
+        return new EncodedPath(path[0] / height, path[0] % height, builder.build(), path.length);
+    }
+
+    /**
+     * Visits every square on the path, from the start to the destination, without creating any objects
+     * @param visitor called with the coordinates of each square
+     */
+    public void forEach(Visitor visitor) {
+        int x = startX;
+        int y = startY;
+        visitor.visit(x, y);
+        for (byte run : runs) {
+            int direction = (run >>> 6) & 3;
+            int steps = (run & 63) + 1;
+            int dx = Direction.X[direction];
+            int dy = Direction.Y[direction];
+            for (int i = 0; i < steps; i++) {
+                x += dx;
+                y += dy;
+                visitor.visit(x, y);
+            }
+        }
+    }
+
+    /**
+     * Gets the index of every square on the path, from the start to the destination
+     * @param height height of the grid, used to turn coordinates into indexes
+     * @return the indexes, in the same form as {@link SearchAlgorithm#path()}
+     */
+    public int[] toIndexes(int height) {
+        int[] path = new int[length];
+        int[] i = {0};
+        forEach((x, y) -> path[i[0]++] = x * height + y);
+        return path;
+    }
+
+    /**
+     * @return the number of squares on the path, including the start and the destination
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @return the start of the path
+     */
+    public Point getStart() {
+        return new Point(startX, startY);
+    }
+
+    /**
+     * Moves the whole path, such as to change between coordinates with and without the grid's border
+     * @param dx how far to move in x
+     * @param dy how far to move in y
+     * @return the moved path, which shares its runs with this one
+     */
+    public EncodedPath translate(int dx, int dy) {
+        return new EncodedPath(startX + dx, startY + dy, runs, length);
+    }
+
+    /**
+     * @return the number of runs the path is stored as
+     */
+    public int getRunCount() {
+        return runs.length;
+    }
+
+    /**
+     * @return the number of bytes {@link #writeTo(ByteBuffer)} writes
+     */
+    public int sizeInBytes() {
+        return 3 * Integer.BYTES + runs.length;
+    }
+
+    /**
+     * Writes the path to a buffer: the start coordinates, the number of runs, and the runs
+     * @param buffer the buffer, which needs {@link #sizeInBytes()} bytes left
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putInt(startX);
+        buffer.putInt(startY);
+        buffer.putInt(runs.length);
+        buffer.put(runs);
+    }
+
+    /**
+     * Reads a path written by {@link #writeTo(ByteBuffer)}
+     * @param buffer the buffer, positioned at the start of the path. Its position is moved past the path.
+     * @return the path
+     * @throws BufferUnderflowException if the buffer ends before the path does
+     */
+    public static EncodedPath readFrom(ByteBuffer buffer) {
+        int startX = buffer.getInt();
+        int startY = buffer.getInt();
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining()) throw new BufferUnderflowException();
+        byte[] runs = new byte[count];
+        buffer.get(runs);
+        int length = 1;
+        for (byte run : runs) {
+            length += (run & 63) + 1;
+        }
+        return new EncodedPath(startX, startY, runs, length);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof EncodedPath other)) return false;
+        return startX == other.startX && startY == other.startY && Arrays.equals(runs, other.runs);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * startX + startY) + Arrays.hashCode(runs);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("path of %d squares from %d, %d in %d runs (%d bytes)",
+                length, startX, startY, runs.length, sizeInBytes());
+    }
+}
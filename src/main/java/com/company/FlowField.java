@@ -0,0 +1,298 @@
+package com.company;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Stores which way to step from every square to get to one destination. It is made with one breadth first search
+ * backwards from the destination, so any number of walkers going to the same place can share it, and each of them
+ * finds its next step by looking up a single entry.
+ * <p>
+ * Each square's direction is packed into two bits, plus one bit to say whether the destination can be reached from
+ * the square. The distance to the destination is also kept, so when a wall is added or removed only the squares
+ * whose path changes need to be searched again.
+ * @see MoveTableWalk
+ */
+public class FlowField implements MoveTable {
+
+    /**
+     * The grid, true if there is a wall. This is the live grid, so {@link #update(int, int)} should be called when it
+     * changes.
+     */
+    private final boolean[][] grid;
+
+    /**
+     * Height of the grid, used to turn coordinates into an index
+     */
+    private final int height;
+
+    /**
+     * Index of the destination
+     */
+    private final int dest;
+
+    /**
+     * Direction to step from each square, two bits per square, 32 squares per long
+     */
+    private final long[] directions;
+
+    /**
+     * Bit set if the destination can be reached from the square
+     */
+    private final long[] reachable;
+
+    /**
+     * Distance from each square to the destination, or -1 if it cannot be reached
+     */
+    private final int[] distances;
+
+    /**
+     * Scratch space for searching
+     */
+    private final int[] queue;
+
+    /**
+     * Builds the field
+     * @param grid the grid, true if there is a wall. The edges of the grid must be walls.
+     * @param destX x coordinate of the destination
+     * @param destY y coordinate of the destination
+     */
+    public FlowField(boolean[][] grid, int destX, int destY) {
+        this.grid = grid;
+        height = grid[0].length;
+        dest = destX * height + destY;
+        int cells = grid.length * height;
+        directions = new long[(cells + 31) >>> 5];
+        reachable = new long[(cells + 63) >>> 6];
+        distances = new int[cells];
+        queue = new int[cells];
+        rebuild();
+    }
+
+    /**
+     * Searches the whole grid again
+     */
+    public void rebuild() {
+        Arrays.fill(distances, -1);
+        Arrays.fill(reachable, 0);
+        if (grid[dest / height][dest % height]) return;
+        distances[dest] = 0;
+        setReachable(dest, true);
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = dest;
+        while (head < tail) {
+            int curr = queue[head++];
+            int x = curr / height;
+            int y = curr % height;
+            for (int d = 0; d < 4; d++) {
+                int nx = x + Direction.X[d];
+                int ny = y + Direction.Y[d];
+                int n = nx * height + ny;
+                if (!grid[nx][ny] && distances[n] == -1) {
+                    distances[n] = distances[curr] + 1;
+                    // the neighbor was reached from curr, so it steps back the other way
+                    setDirection(n, Direction.opposite(d));
+                    setReachable(n, true);
+                    queue[tail++] = n;
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the field after a square was changed to or from a wall. Only the squares whose distance to the
+     * destination changes are searched again.
+     * @param x x coordinate of the square that changed
+     * @param y y coordinate of the square that changed
+     */
+    public void update(int x, int y) {
+        int cell = x * height + y;
+        if (cell == dest) {
+            rebuild();
+        } else if (grid[x][y]) {
+            wallAdded(cell);
+        } else {
+            wallRemoved(cell);
+        }
+    }
+
+    /**
+     * Recomputes the squares whose path went through a square that is now a wall
+     * @param cell index of the new wall
+     */
+    private void wallAdded(int cell) {
+        if (distances[cell] == -1) return;
+        // every square whose path goes through the wall needs a new path. The destination has no direction of its
+        // own, so it is skipped rather than read as stepping toward its neighbor.
+        int tail = 0;
+        queue[tail++] = cell;
+        distances[cell] = -1;
+        setReachable(cell, false);
+        for (int head = 0; head < tail; head++) {
+            int curr = queue[head];
+            int x = curr / height;
+            int y = curr % height;
+            for (int d = 0; d < 4; d++) {
+                int n = (x + Direction.X[d]) * height + y + Direction.Y[d];
+                if (n != dest && distances[n] != -1 && getDirection(n) == Direction.opposite(d)) {
+                    distances[n] = -1;
+                    setReachable(n, false);
+                    queue[tail++] = n;
+                }
+            }
+        }
+        // start again from the squares next to the ones that lost their path, closest first
+        PriorityQueue<Long> pq = new PriorityQueue<>();
+        for (int i = 1; i < tail; i++) {
+            int curr = queue[i];
+            int x = curr / height;
+            int y = curr % height;
+            for (int d = 0; d < 4; d++) {
+                int n = (x + Direction.X[d]) * height + y + Direction.Y[d];
+                if (distances[n] != -1) {
+                    pq.add((long) (distances[n] + 1) << 32 | (long) d << 30 | curr);
+                }
+            }
+        }
+        while (!pq.isEmpty()) {
+            long entry = pq.remove();
+            int distance = (int) (entry >>> 32);
+            int d = (int) (entry >>> 30) & 3;
+            int curr = (int) entry & ((1 << 30) - 1);
+            if (distances[curr] != -1) continue;
+            distances[curr] = distance;
+            setDirection(curr, d);
+            setReachable(curr, true);
+            int x = curr / height;
+            int y = curr % height;
+            for (int nd = 0; nd < 4; nd++) {
+                int nx = x + Direction.X[nd];
+                int ny = y + Direction.Y[nd];
+                int n = nx * height + ny;
+                if (!grid[nx][ny] && distances[n] == -1) {
+                    pq.add((long) (distance + 1) << 32 | (long) Direction.opposite(nd) << 30 | n);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the squares that get a shorter path through a square that is no longer a wall
+     * @param cell index of the square that was opened
+     */
+    private void wallRemoved(int cell) {
+        int x = cell / height;
+        int y = cell % height;
+        // take the best path through any neighbor
+        int best = -1;
+        for (int d = 0; d < 4; d++) {
+            int n = (x + Direction.X[d]) * height + y + Direction.Y[d];
+            if (distances[n] != -1 && (best == -1 || distances[n] + 1 < distances[cell])) {
+                best = d;
+                distances[cell] = distances[n] + 1;
+            }
+        }
+        if (best == -1) return;
+        setDirection(cell, best);
+        setReachable(cell, true);
+        // every improvement comes from this square, so a plain queue keeps the squares in order of distance
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = cell;
+        while (head < tail) {
+            int curr = queue[head++];
+            int cx = curr / height;
+            int cy = curr % height;
+            for (int d = 0; d < 4; d++) {
+                int nx = cx + Direction.X[d];
+                int ny = cy + Direction.Y[d];
+                int n = nx * height + ny;
+                if (!grid[nx][ny] && (distances[n] == -1 || distances[n] > distances[curr] + 1)) {
+                    distances[n] = distances[curr] + 1;
+                    setDirection(n, Direction.opposite(d));
+                    setReachable(n, true);
+                    queue[tail++] = n;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the direction to step from a square
+     * @param x x coordinate of the square
+     * @param y y coordinate of the square
+     * @return one of the {@link Direction} constants, or -1 if the destination cannot be reached or is already
+     * reached
+     */
+    public int nextStep(int x, int y) {
+        int cell = x * height + y;
+        if (cell == dest || (reachable[cell >>> 6] & 1L << cell) == 0) return -1;
+        return getDirection(cell);
+    }
+
+    @Override
+    public int firstMove(int x1, int y1, int x2, int y2) {
+        if (x2 * height + y2 != dest) {
+            throw new IllegalArgumentException("Flow field goes to " + dest / height + ", " + dest % height
+                    + ", not " + x2 + ", " + y2);
+        }
+        return nextStep(x1, y1);
+    }
+
+    /**
+     * Checks whether this field goes to a square
+     * @param x x coordinate of the square
+     * @param y y coordinate of the square
+     * @return true if the square is the destination
+     */
+    public boolean goesTo(int x, int y) {
+        return x * height + y == dest;
+    }
+
+    /**
+     * Gets the distance from a square to the destination
+     * @param x x coordinate of the square
+     * @param y y coordinate of the square
+     * @return the distance, or -1 if the destination cannot be reached
+     */
+    public int distance(int x, int y) {
+        return distances[x * height + y];
+    }
+
+    private int getDirection(int cell) {
+        return (int) (directions[cell >>> 5] >>> ((cell & 31) << 1)) & 3;
+    }
+
+    private void setDirection(int cell, int direction) {
+        int shift = (cell & 31) << 1;
+        directions[cell >>> 5] = directions[cell >>> 5] & ~(3L << shift) | (long) direction << shift;
+    }
+
+    private void setReachable(int cell, boolean value) {
+        if (value) reachable[cell >>> 6] |= 1L << cell;
+        else reachable[cell >>> 6] &= ~(1L << cell);
+    }
+
+    /**
+     * @return the number of bits per square that walkers read: two for the direction and one to say whether the
+     * destination can be reached
+     */
+    public double queryBitsPerCell() {
+        return (directions.length * 64.0 + reachable.length * 64.0) / distances.length;
+    }
+
+    /**
+     * @return the number of bytes per square, including the distances kept to allow updates
+     */
+    public double bytesPerCell() {
+        return (directions.length * 8.0 + reachable.length * 8.0 + distances.length * 4.0 + queue.length * 4.0)
+                / distances.length;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("flow field to %d, %d: %.2f bits per square for walkers, %.2f bytes per square in total",
+                dest / height, dest % height, queryBitsPerCell(), bytesPerCell());
+    }
+}
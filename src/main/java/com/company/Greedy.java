@@ -1,7 +1,6 @@
 package com.company;
 
-import java.awt.*;
-import java.util.PriorityQueue;
+import java.util.Arrays;
 
 /**
  * Greedy best first search is similar to A star, but does not take distance from start into account. As a result,
@@ -11,59 +10,96 @@ import java.util.PriorityQueue;
  */
 public class Greedy extends SearchAlgorithm {
 
-    private static class Node extends State implements Comparable<Node> {
+    /**
+     * First square in each bucket, or -1 if the bucket is empty. Bucket i holds the open squares that are i away from
+     * the destination, and since that distance is never more than the width plus the height of the grid, an array
+     * of buckets can be used instead of a heap.
+     */
+    private final int[] buckets;
+    /**
+     * Next square in the same bucket as each square, or -1 for the last one. Each bucket is a stack, so the square
+     * added last is searched first, and no objects are made when adding a square.
+     */
+    private final int[] nextInBucket;
+    /**
+     * No bucket below this one has any squares
+     */
+    private int lowest;
+    private final SearchContext context;
+    private final int destIndex;
 
-        public int cost;
-
-        public Node(Point point, int cost, State prev) {
-            super(point, prev);
-            this.cost = cost;
-        }
-
-        @Override
-        public int compareTo(Node o) {
-            return cost - o.cost;
-        }
+    public Greedy(boolean[][] grid, int x1, int y1, int x2, int y2) {
+        this(grid, x1, y1, x2, y2, new SearchContext(grid.length * grid[0].length));
     }
 
-    private final PriorityQueue<Node> pq = new PriorityQueue<>();
-    private final boolean[][] visited;
-
-    public Greedy(boolean[][] grid, int x1, int y1, int x2, int y2) {
+    /**
+     * Creates a search that reuses the scratch space of an earlier one
+     * @param context the scratch space, which must not be in use by another search
+     */
+    public Greedy(boolean[][] grid, int x1, int y1, int x2, int y2, SearchContext context) {
         super(grid, x1, y1, x2, y2);
-        visited = new boolean[grid.length][grid[0].length];
-        pq.add(new Node(new Point(x1, y1), 0, null));
+        this.context = context;
+        context.begin(grid.length * height);
+        // the queue is not used for anything else, so it can hold the links between squares in a bucket
+        nextInBucket = context.queue;
+        destIndex = x2 * height + y2;
+        buckets = new int[grid.length + height - 1];
+        Arrays.fill(buckets, -1);
+        int start = x1 * height + y1;
+        context.parents[start] = -1;
+        push(start, manhattanDistance(x1, y1, x2, y2));
     }
 
     private int manhattanDistance(int x1, int y1, int x2, int y2) {
         return Math.abs(y2 - y1) + Math.abs(x2 - x1);
     }
 
-    private int distanceSquared(int x1, int y1, int x2, int y2) {
-        int xDist = x2 - x1;
-        int yDist = y2 - y1;
-        return xDist * xDist + yDist * yDist;
+    /**
+     * Adds a square to its bucket and marks it as seen, so it is not added again
+     * @param cell index of the square
+     * @param bucket distance from the square to the destination
+     */
+    private void push(int cell, int bucket) {
+        context.see(cell);
+        nextInBucket[cell] = buckets[bucket];
+        buckets[bucket] = cell;
+        if (bucket < lowest) lowest = bucket;
     }
 
+    /**
+     * Searches the square estimated to be closest to the destination
+     * @return index of the square, or -1 if the search ended
+     */
     @Override
-    public Point next() {
-        Node curr;
-        do {
-            curr = pq.remove();
-        } while (visited[curr.point.x][curr.point.y]);
-        if (curr.point.equals(dest)) {
-            notDone = false;
-            currentState = curr;
+    protected int step() {
+        if (!beginStep()) return -1;
+        // neighbors are at most one bucket lower than the square they came from, so this scan is short
+        while (lowest < buckets.length && buckets[lowest] == -1) lowest++;
+        if (lowest == buckets.length) {
+            end(SearchStatus.UNREACHABLE);
+            return -1;
+        }
+        int curr = buckets[lowest];
+        buckets[lowest] = nextInBucket[curr];
+        if (curr == destIndex) {
+            finish(pathTo(curr, context.parents));
         } else {
-            visited[curr.point.x][curr.point.y] = true;
-            State finalCurr = curr;
-            applyLambdaToNeighbors(curr.point.x, curr.point.y, (x, y) -> {
-                if (!visited[x][y]) {
-                        int fScore = manhattanDistance(x, y, dest.x, dest.y);
-                        pq.add(new Node(new Point(x, y), fScore, finalCurr));
-                    }
-            });
+            context.close(curr);
+            int x = curr / height;
+            int y = curr - x * height;
+            if (!grid[x-1][y]) add(curr - height, x - 1, y, curr);
+            if (!grid[x][y-1]) add(curr - 1, x, y - 1, curr);
+            if (!grid[x][y+1]) add(curr + 1, x, y + 1, curr);
+            if (!grid[x+1][y]) add(curr + height, x + 1, y, curr);
+        }
+        return curr;
+    }
+
+    private void add(int cell, int x, int y, int parent) {
+        // squares that are open or closed are seen, so each square is only added once
+        if (!context.isSeen(cell)) {
+            context.parents[cell] = parent;
+            push(cell, manhattanDistance(x, y, dest.x, dest.y));
         }
-        return curr.point;
     }
 }
@@ -7,8 +7,12 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.image.BufferedImage;
-import java.util.*;
-import java.util.List;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
 
 /**
  * Class used to display a grid that is used to visualize pathfinding algorithms. Includes methods to search with
@@ -40,6 +44,21 @@ public class GridPanel extends JComponent implements MouseListener, MouseMotionL
      */
     private static final Color SEARCH_COLOR = new Color(0xFF2A9FFF, true);
 
+    /**
+     * Number of cells the search algorithm visits each time the search timer fires
+     */
+    private static final int STEPS_PER_TICK = 1;
+
+    /**
+     * Milliseconds between ticks of the search and retrace timers
+     */
+    private static final int TIMER_DELAY = 10;
+
+    /**
+     * Background of the overlay that shows the render stats
+     */
+    private static final Color OVERLAY_COLOR = new Color(0, 0, 0, 170);
+
     /**
      * Random number generator
      */
@@ -70,30 +89,33 @@ public class GridPanel extends JComponent implements MouseListener, MouseMotionL
      */
     public static final int GREEDY = 3;
 
-
-    /////////////////////////////////////
-    // Storage used for generating mazes
-    /////////////////////////////////////
+    /**
+     * Follow the moves stored in a compressed path database
+     */
+    public static final int PATH_DATABASE = 4;
 
     /**
-     * To keep track of which cells are already visited when generating DFS maze
+     * Follow a flow field built backwards from the target
      */
-    private final boolean[][] visited = new boolean[WIDTH+2][HEIGHT+2];
+    public static final int FLOW_FIELD = 5;
 
     /**
-     * This array will be shuffled, so the neighbors will be visited in random order
+     * A* over corridors instead of squares
      */
-    private final int[] neighbors = {0, 1, 2, 3};
+    public static final int CORRIDOR = 6;
 
     /**
-     * Table to get x direction given an index between 0 and 4 exclusive
+     * A* that jumps across empty rectangles instead of searching inside them
      */
-    private static final int[] X_DIR = {-2, 0, 0, 2};
+    public static final int RECTANGLES = 7;
 
     /**
-     * Table to get y direction given an index between 0 and 4 exclusive
+     * Name of each search algorithm above, by number, used to name trace files
      */
-    private static final int[] Y_DIR = {0, -2, 2, 0};
+    private static final AlgorithmType[] ALGORITHM_TYPES = {
+            AlgorithmType.DFS, AlgorithmType.BFS, AlgorithmType.A_STAR, AlgorithmType.GREEDY,
+            AlgorithmType.PATH_DATABASE, AlgorithmType.FLOW_FIELD, AlgorithmType.CORRIDOR, AlgorithmType.RECTANGLES
+    };
 
 
     //////////////////
@@ -101,9 +123,10 @@ public class GridPanel extends JComponent implements MouseListener, MouseMotionL
     //////////////////
 
     /**
-     * Grid that is true if there is a wall
+     * Grid that is true if there is a wall. Searches run on a snapshot of it, so the walls can still be edited while a
+     * search is running.
      */
-    private final boolean[][] grid;
+    private final VersionedGrid versionedGrid;
 
     /**
      * Cache the grid lines, so we don't have to draw it again
@@ -146,6 +169,86 @@ public class GridPanel extends JComponent implements MouseListener, MouseMotionL
      */
     private SearchAlgorithm searchAlgorithm;
 
+    /**
+     * Token for the running search, cancelled when the search is stopped
+     */
+    private CancellationToken searchToken = new CancellationToken();
+
+    /**
+     * Scratch space shared by every search, so starting a search does not need to allocate and clear arrays the size
+     * of the grid
+     */
+    private final SearchContext searchContext = new SearchContext((WIDTH + 2) * (HEIGHT + 2));
+
+    /**
+     * Path database for the current walls, built the first time it is needed. Set to null when the walls change.
+     */
+    private CompressedPathDatabase pathDatabase;
+
+    /**
+     * Flow field to the target, built the first time it is needed. It is updated when a single cell changes, and set
+     * to null when the whole grid changes.
+     */
+    private FlowField flowField;
+
+    /**
+     * The grid with dead ends removed and corridors collapsed, built the first time it is needed and then kept up to
+     * date as cells change
+     */
+    private CorridorGraph corridorGraph;
+
+    /**
+     * Empty rectangles of the current walls, built the first time they are needed. Set to null when the walls change.
+     */
+    private RectangleDecomposition rectangles;
+
+    /**
+     * Index of each cell the search algorithm visited during the last tick of the search timer
+     */
+    private int[] stepBuffer = new int[STEPS_PER_TICK];
+
+    /**
+     * Number of cells to visit each time the search timer fires, which can be more than STEPS_PER_TICK when a trace is
+     * replayed
+     */
+    private int stepsPerTick = STEPS_PER_TICK;
+
+    /**
+     * Whether each search is recorded to a trace file
+     */
+    private boolean recording;
+
+    /**
+     * Trace file the running search is recorded to, or null if it is not being recorded
+     */
+    private TraceWriter traceWriter;
+
+    /**
+     * How long drawing and the timers take
+     */
+    private final RenderStats stats = new RenderStats();
+
+    /**
+     * Whether the render stats are drawn over the grid
+     */
+    private boolean overlayVisible;
+
+    /**
+     * The last thing built or recorded of each kind, such as the size of a path database, shown on the overlay under
+     * the render stats
+     */
+    private final Map<String, String> reports = new LinkedHashMap<>();
+
+    /**
+     * The path found by the search algorithm, from start to target, as indexes into the grid
+     */
+    private int[] path = new int[0];
+
+    /**
+     * Number of cells of the path that still need to be retraced. The path is retraced from the end.
+     */
+    private int pathRemaining;
+
 
     ///////////////////////////
     // Mouse related variables
@@ -187,7 +290,7 @@ public class GridPanel extends JComponent implements MouseListener, MouseMotionL
     private boolean onEnd = false;
 
     /**
-     * Whether the panel should be disabled because a search algorithm is running
+     * Whether a search algorithm is running, which locks the start and end in place and disables the buttons
      */
     private boolean disabled = false;
 
@@ -199,45 +302,82 @@ public class GridPanel extends JComponent implements MouseListener, MouseMotionL
     /**
      * Timer to retrace steps
      */
-    private final Timer retraceTimer = new Timer(10, e -> {
-        if (searchAlgorithm.hasMoreStepsToRetrace()) {
-            Point np = searchAlgorithm.retrace();
-            blocksGraphics.fillRect((np.x - 1) * GRID_SIZE, (np.y - 1) * GRID_SIZE, GRID_SIZE, GRID_SIZE);
-            repaint();
-        } else {
-            ((Timer)e.getSource()).stop();
-            disabled = false;
-            Main.enableButtons(true);
+    private final Timer retraceTimer = new Timer(TIMER_DELAY, e -> {
+        stats.beginTick(RenderStats.RETRACE_TIMER, TIMER_DELAY);
+        try {
+            if (pathRemaining > 0) {
+                fillCell(path[--pathRemaining]);
+                repaint();
+            } else {
+                ((Timer)e.getSource()).stop();
+                disabled = false;
+                Main.enableButtons(true);
+            }
+        } finally {
+            stats.endTick(RenderStats.RETRACE_TIMER);
         }
     });
 
     /**
      * Timer to get next step for the search algorithm
      */
-    private final Timer searchTimer = new Timer(10, e -> {
-        if (searchAlgorithm.hasNext()) {
-            Point next;
-            try {
-                next = searchAlgorithm.next();
-            } catch (Exception exception) {
-                // The search algorithm probably ran out of places to visit.
-                JOptionPane.showMessageDialog(this.getRootPane(),
-                        "Search algorithm finished without reaching target", "Cannot find Target",
-                        JOptionPane.ERROR_MESSAGE);
-                exception.printStackTrace();
-                ((Timer)e.getSource()).stop();
-                disabled = false;
-                Main.enableButtons(true);
-                // exit
+    private final Timer searchTimer = new Timer(TIMER_DELAY, e -> {
+        stats.beginTick(RenderStats.SEARCH_TIMER, TIMER_DELAY);
+        try {
+            if (searchAlgorithm.hasNext()) {
+                int count;
+                try {
+                    count = searchAlgorithm.next(stepBuffer, stepsPerTick);
+                } catch (UncheckedIOException ex) {
+                    // only a replay reads a file while searching
+                    stop();
+                    JOptionPane.showMessageDialog(this.getRootPane(), "Could not read the trace: " + ex.getMessage(),
+                            "Cannot replay trace", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                if (traceWriter != null) {
+                    try {
+                        traceWriter.writeExpansions(stepBuffer, count);
+                    } catch (IOException ex) {
+                        // the trace is closed first, so the timer firing while the dialog is open does not try again
+                        closeTrace(null);
+                        showTraceError("Stopped recording the search: " + ex.getMessage());
+                    }
+                }
+                for (int i = 0; i < count; i++) {
+                    fillCell(stepBuffer[i]);
+                }
+                repaint();
                 return;
             }
-            blocksGraphics.fillRect((next.x - 1) * GRID_SIZE, (next.y - 1) * GRID_SIZE, GRID_SIZE, GRID_SIZE);
-            repaint();
-        } else {
-            // done searching and found target. Retrace steps
             ((Timer)e.getSource()).stop();
-            blocksGraphics.setColor(Color.YELLOW);
-            retraceTimer.start();
+            SearchStatus status = searchAlgorithm.getStatus();
+            // a search that was stopped has no path, and is played back as stopped rather than as finding none
+            closeTrace(status == SearchStatus.SUCCEEDED || status == SearchStatus.UNREACHABLE
+                    ? searchAlgorithm.path() : null);
+            switch (status) {
+                case SUCCEEDED -> {
+                    // done searching and found target. Retrace steps
+                    blocksGraphics.setColor(Color.YELLOW);
+                    path = searchAlgorithm.path();
+                    pathRemaining = path.length;
+                    retraceTimer.start();
+                    return;
+                }
+                case UNREACHABLE -> JOptionPane.showMessageDialog(this.getRootPane(),
+                        "Search algorithm finished without reaching target", "Cannot find Target",
+                        JOptionPane.ERROR_MESSAGE);
+                case OUT_OF_BUDGET -> JOptionPane.showMessageDialog(this.getRootPane(),
+                        "Search algorithm ran out of time before reaching target", "Cannot find Target",
+                        JOptionPane.ERROR_MESSAGE);
+                default -> {
+                    // cancelled, so there is nothing to show
+                }
+            }
+            disabled = false;
+            Main.enableButtons(true);
+        } finally {
+            stats.endTick(RenderStats.SEARCH_TIMER);
         }
     });
 
@@ -253,7 +393,8 @@ public class GridPanel extends JComponent implements MouseListener, MouseMotionL
         setMinimumSize(getPreferredSize());
 
         // initialize grid
-        grid = new boolean[WIDTH+2][HEIGHT+2];
+        versionedGrid = new VersionedGrid(WIDTH + 2, HEIGHT + 2);
+        boolean[][] grid = versionedGrid.mutableGrid();
         // make borders a wall
         for (int i = 0; i < WIDTH + 2; i++) {
             grid[i][0] = true;
@@ -285,8 +426,28 @@ public class GridPanel extends JComponent implements MouseListener, MouseMotionL
         endY = 26;
     }
 
+    /**
+     * Starts checking on the event dispatch thread once the panel is shown
+     */
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        stats.startWatchdog();
+    }
+
+    /**
+     * Stops checking on the event dispatch thread when the panel is taken off the screen, since the checks would keep
+     * Swing from shutting down on its own
+     */
+    @Override
+    public void removeNotify() {
+        stats.stopWatchdog();
+        super.removeNotify();
+    }
+
     @Override
     protected void paintComponent(Graphics g) {
+        stats.beginFrame();
         super.paintComponent(g);
 
         // draw blocks
@@ -308,17 +469,78 @@ public class GridPanel extends JComponent implements MouseListener, MouseMotionL
             g.setColor(Color.GRAY);
             g.fillRect(mouseX * GRID_SIZE + 3, mouseY * GRID_SIZE + 3, 5, 5);
         }
+
+        if (overlayVisible) drawOverlay(g);
+
+        Rectangle clip = g.getClipBounds();
+        stats.endFrame(clip == null ? (long) getWidth() * getHeight() : (long) clip.width * clip.height);
+    }
+
+    /**
+     * Draws the render stats in the top left corner
+     * @param g the graphics to draw with
+     */
+    private void drawOverlay(Graphics g) {
+        String[] statLines = stats.lines();
+        String[] lines = new String[statLines.length + reports.size()];
+        System.arraycopy(statLines, 0, lines, 0, statLines.length);
+        int next = statLines.length;
+        for (String report : reports.values()) lines[next++] = report;
+        g.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 11));
+        FontMetrics metrics = g.getFontMetrics();
+        int width = 0;
+        for (String line : lines) width = Math.max(width, metrics.stringWidth(line));
+        g.setColor(OVERLAY_COLOR);
+        g.fillRect(4, 4, width + 8, lines.length * metrics.getHeight() + 8);
+        g.setColor(Color.WHITE);
+        for (int i = 0; i < lines.length; i++) {
+            g.drawString(lines[i], 8, 8 + i * metrics.getHeight() + metrics.getAscent());
+        }
+    }
+
+    /**
+     * Counts each repaint, so the overlay can show how many Swing coalesced. Every other repaint method ends up here.
+     */
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height) {
+        // Swing can repaint while the panel is still being constructed, before the stats exist
+        if (stats != null) stats.repaintRequested();
+        super.repaint(tm, x, y, width, height);
+    }
+
+    /**
+     * Shows or hides the render stats over the grid
+     * @param visible whether to show them
+     */
+    public void setOverlayVisible(boolean visible) {
+        overlayVisible = visible;
+        repaint();
+    }
+
+    /**
+     * Shows a line on the overlay about something that was built or recorded, in place of the last one of the same
+     * kind
+     * @param kind what was built or recorded
+     * @param text the line to show
+     */
+    private void report(String kind, String text) {
+        reports.put(kind, text);
+        if (overlayVisible) repaint();
+    }
+
+    /**
+     * @return how long drawing and the timers take
+     */
+    public RenderStats getRenderStats() {
+        return stats;
     }
 
     /**
      * Fills the grid randomly
      */
     public void fillRandom() {
-        for (int i = 1; i <= WIDTH; i++) {
-            for (int j = 1; j <= HEIGHT; j++) {
-                grid[i][j] = rand.nextDouble() < 0.3;
-            }
-        }
+        MazeGenerator.fillRandom(versionedGrid.mutableGrid(), 0.3, rand);
+        gridChanged();
         drawGridOnImage();
         repaint();
     }
@@ -327,198 +549,76 @@ public class GridPanel extends JComponent implements MouseListener, MouseMotionL
      * Fills the grid with a maze generated using depth first search
      */
     public void dfsMaze() {
-        for (int i = 1; i <= WIDTH; i++) {
-            for (int j = 1; j <= HEIGHT; j++) {
-                grid[i][j] = true;
-                visited[i][j] = false;
-            }
-        }
-        // to store next cell to visit
-        ArrayDeque<Point> st = new ArrayDeque<>();
-        // keep track of parent
-        ArrayDeque<Point> prev = new ArrayDeque<>();
-        st.push(new Point(1, 1));
-        while (!st.isEmpty()) {
-            Point curr = st.pop();
-            Point last = prev.isEmpty() ? null : prev.pop();
-            if (visited[curr.x][curr.y]) continue;
-            visited[curr.x][curr.y] = true;
-            grid[curr.x][curr.y] = false;
-            // add neighbors randomly
-            shuffleNeighborsArray();
-            for (int n : neighbors) {
-                int x = curr.x + X_DIR[n];
-                int y = curr.y + Y_DIR[n];
-                if (withinCenterOfGrid(x, y) && !visited[x][y]) {
-                    st.push(new Point(x, y));
-                    prev.push(curr);
-                }
-            }
-            if (last != null) {
-                // connect current and previous cell
-                int xMid = (curr.x + last.x) / 2;
-                int yMid = (curr.y + last.y) / 2;
-                grid[xMid][yMid] = false;
-            }
-        }
+        MazeGenerator.dfsMaze(versionedGrid.mutableGrid(), rand);
+        gridChanged();
         drawGridOnImage();
         repaint();
     }
 
     /**
-     * Fisher Yates algorithm to shuffle the neighbors array
+     * Generate a maze using Eller's algorithm
      */
-    private void shuffleNeighborsArray() {
-        for (int i = 3; i >= 0; i--) {
-            int j = rand.nextInt(i+1);
-            // swap
-            int temp = neighbors[i];
-            neighbors[i] = neighbors[j];
-            neighbors[j] = temp;
-        }
+    public void ellerMaze() {
+        MazeGenerator.ellerMaze(versionedGrid.mutableGrid(), rand);
+        gridChanged();
+        drawGridOnImage();
+        repaint();
     }
 
     /**
-     * Generate a maze using Eller's algorithm. Since the algorithm only looks at one row at a time, a cool property
-     * is that it can generate infinitely long mazes forever!
+     * Generate a maze using randomized Kruskal's algorithm
      */
-    public void ellerMaze() {
-        // clear grid
-        for (int i = 1; i <= WIDTH; i++) {
-            for (int j = 1; j <= HEIGHT; j++) {
-                grid[i][j] = false;
-            }
-        }
-        final int size = HEIGHT / 2 + 1;
-        int[] curr = new int[size];
-        // number: indexes that are that number
-        HashMap<Integer, ArrayList<Integer>> setElements = new HashMap<>();
-        // make current unique
-        for (int i = 0; i < size; i++) {
-            curr[i] = i;
-            setElements.put(i, new ArrayList<>(List.of(i)));
-        }
-        // to generate new set numbers
-        int cnt = size;
-
-        // process all rows but last
-        for (int i = 1; i < WIDTH; i+=2) {
-            //int prev = 0;
-            for (int j = 1; j < size; j++) {
-                if (curr[j - 1] != curr[j] && rand.nextInt(5) < 3) {
-                    // join sets
-                    ArrayList<Integer> temp = setElements.remove(curr[j]);
-                    for (int element : temp) {
-                        // relabel the id for every element in the hash map that matched the set we are going to join
-                        curr[element] = curr[j-1];
-                    }
-                    // it will always be present
-                    setElements.get(curr[j]).addAll(temp);
-                } else {
-                    // make wall
-                    grid[i][j * 2] = true;
-                    //prev = curr[j];
-                }
-            }
-            Arrays.fill(curr, -1);
-            // randomly add bottom walls for each set
-            for (Map.Entry<Integer, ArrayList<Integer>> e : setElements.entrySet()){
-                int k = e.getKey();
-                ArrayList<Integer> v = e.getValue();
-                // At least one bottom wall per set
-                 int numToAdd = v.size() == 1 ? 1 : rand.nextInt(v.size() / 2) + 1;
-                Collections.shuffle(v);
-                for (int j = 0; j < numToAdd; j++) {
-                    curr[v.get(j)] = k;
-                }
-                // trim
-                List<Integer> temp = v.subList(numToAdd, v.size());
-                for (int n : temp) {
-                    grid[i+1][n * 2 + 1] = true;
-                }
-                temp.clear();
-            }
-            for (int j = 0; j < curr.length; j++) {
-                if (curr[j] == -1) {
-                    //System.out.println(j);
-                    curr[j] = cnt;
-                    //grid[i+1][j*2+1] = true;
-                    setElements.put(cnt, new ArrayList<>(List.of(j)));
-                    cnt++;
-                }
-            }
-            // walls on bottom
-            for (int j = 2; j < HEIGHT; j+=2) {
-                grid[i+1][j] = true;
-            }
-        }
-        // last iteration
-        for (int i = 1; i < size; i++) {
-            if (curr[i] == curr[i-1]) {
-                // add wall
-                grid[WIDTH][i * 2] = true;
-            } else {
-                // join sets
-                ArrayList<Integer> temp = setElements.remove(curr[i]);
-                for (int element : temp) {
-                    curr[element] = curr[i-1];
-                }
-                setElements.get(curr[i]).addAll(temp);
-            }
-        }
+    public void kruskalMaze() {
+        MazeGenerator.kruskalMaze(versionedGrid.mutableGrid(), rand);
+        gridChanged();
         drawGridOnImage();
         repaint();
     }
 
     /**
-     * To store two coordinate points
+     * Fills the grid with open caves
      */
-    private record TwoPoints(int x1, int y1, int x2, int y2) {}
+    public void caves() {
+        new CaveGenerator().generate(versionedGrid.mutableGrid(), rand.nextLong());
+        gridChanged();
+        drawGridOnImage();
+        repaint();
+    }
 
     /**
-     * Generate a maze using randomized Kruskal's algorithm
+     * Throws away anything that was computed from the walls, so it is computed again when it is next needed
      */
-    public void kruskalMaze() {
-        // fill grid with walls
-        for (int i = 1; i <= WIDTH; i++) {
-            for (int j = 1; j <= HEIGHT; j++) {
-                grid[i][j] = true;
-            }
-        }
-        ArrayList<TwoPoints> edges = new ArrayList<>();
-        for (int i = 1; i <= WIDTH; i+=2) {
-            for (int j = 1; j <= HEIGHT; j+=2) {
-                if (withinCenterOfGrid(i + 2, j)) edges.add(new TwoPoints(i, j, i + 2, j));
-                if (withinCenterOfGrid(i, j + 2)) edges.add(new TwoPoints(i, j, i, j + 2));
-            }
-        }
-        Collections.shuffle(edges);
-        DisjointSetUnion set = new DisjointSetUnion((WIDTH + 2) * (HEIGHT + 2));
-        // carve it out
-        for (TwoPoints edge : edges) {
-            int id1 = edge.y1() * WIDTH + edge.x1();
-            int id2 = edge.y2() * WIDTH + edge.x2();
-            if (set.get(id1) != set.get(id2)) {
-                set.unite(id1, id2);
-                int midX = (edge.x1() + edge.x2()) / 2;
-                int midY = (edge.y1() + edge.y2()) / 2;
-                grid[midX][midY] = false;
-                grid[edge.x1()][edge.y1()] = false;
-                grid[edge.x2()][edge.y2()] = false;
-            }
-        }
-        drawGridOnImage();
-        repaint();
+    private void gridChanged() {
+        pathDatabase = null;
+        flowField = null;
+        corridorGraph = null;
+        rectangles = null;
     }
 
     /**
-     * Whether the coordinates are within the viewable area of the grid
-     * @param x the x coordinate
-     * @param y the y coordinate
-     * @return whether x &gt;= 1 and x &lt;= WIDTH and y &gt;= 1 and y &lt;= HEIGHT
+     * Updates anything that was computed from the walls after a single cell was changed
+     * @param x x coordinate of the cell in the grid array
+     * @param y y coordinate of the cell in the grid array
      */
-    private boolean withinCenterOfGrid(int x, int y) {
-        return x >= 1 && x <= WIDTH && y >= 1 && y <= HEIGHT;
+    private void cellChanged(int x, int y) {
+        pathDatabase = null;
+        rectangles = null;
+        if (flowField != null) {
+            if (searchAlgorithm instanceof MoveTableWalk && searchAlgorithm.hasNext()) {
+                // a running walk may be following the field, so build a new one for the next walk instead
+                flowField = null;
+            } else {
+                flowField.update(x, y);
+            }
+        }
+        if (corridorGraph != null) {
+            if (searchAlgorithm instanceof CorridorSearch && searchAlgorithm.hasNext()) {
+                // the running search reads the graph, so build a new one for the next search instead
+                corridorGraph = null;
+            } else {
+                corridorGraph.setWall(x, y, versionedGrid.get(x, y));
+            }
+        }
     }
 
     /**
@@ -529,10 +629,22 @@ public class GridPanel extends JComponent implements MouseListener, MouseMotionL
         repaint();
     }
 
+    /**
+     * Fills one cell of the blocks image with the current color
+     * @param cell index of the cell in the grid array, as used by {@link SearchAlgorithm#next(int[], int)}
+     */
+    private void fillCell(int cell) {
+        int x = cell / (HEIGHT + 2);
+        int y = cell % (HEIGHT + 2);
+        blocksGraphics.fillRect((x - 1) * GRID_SIZE, (y - 1) * GRID_SIZE, GRID_SIZE, GRID_SIZE);
+    }
+
     /**
      * Draws the grid onto the blocksGraphics buffered image. true becomes black while false becomes white
      */
     private void drawGridOnImage() {
+        stats.beginDraw();
+        boolean[][] grid = versionedGrid.current();
         blocksGraphics.setColor(Color.WHITE);
         blocksGraphics.fillRect(0, 0, GRID_SIZE * WIDTH, GRID_SIZE * HEIGHT);
         blocksGraphics.setColor(Color.BLACK);
@@ -541,37 +653,196 @@ public class GridPanel extends JComponent implements MouseListener, MouseMotionL
                 if (grid[i+1][j+1]) blocksGraphics.fillRect(i * GRID_SIZE, j * GRID_SIZE, GRID_SIZE, GRID_SIZE);
             }
         }
+        stats.endDraw((long) WIDTH * HEIGHT * GRID_SIZE * GRID_SIZE);
     }
 
     /**
      * Initializes the search with the specified algorithm.
-     * @param algorithm the algorithm to use: DFS, BFS, A_STAR, or GREEDY
+     * @param algorithm the algorithm to use: DFS, BFS, A_STAR, GREEDY, PATH_DATABASE, FLOW_FIELD, CORRIDOR,
+     *                  or RECTANGLES
      */
     public void search(int algorithm) {
         Main.enableButtons(false);
         disabled = true;
         // make start and end empty to make sure the user does not get confused why the algorithm cannot search
-        grid[startX+1][startY+1] = false;
-        grid[endX+1][endY+1] = false;
+        if (versionedGrid.set(startX + 1, startY + 1, false)) cellChanged(startX + 1, startY + 1);
+        if (versionedGrid.set(endX + 1, endY + 1, false)) cellChanged(endX + 1, endY + 1);
         // erase paths that were previously drawn
         clearPath();
+        // search a frozen copy, so cells can be edited while the search plays out
+        boolean[][] grid = versionedGrid.snapshot();
         searchAlgorithm = switch (algorithm) {
-            case DFS -> new DepthFirstSearch(grid, startX + 1, startY + 1, endX + 1, endY + 1);
-            case BFS -> new BreadthFirstSearch(grid, startX + 1, startY + 1, endX + 1, endY + 1);
-            case A_STAR -> new AStar(grid, startX + 1, startY + 1, endX + 1, endY + 1);
-            case GREEDY -> new Greedy(grid, startX + 1, startY + 1, endX + 1, endY + 1);
+            case DFS -> new DepthFirstSearch(grid, startX + 1, startY + 1, endX + 1, endY + 1, searchContext);
+            case BFS -> new BreadthFirstSearch(grid, startX + 1, startY + 1, endX + 1, endY + 1, searchContext);
+            case A_STAR ->
+                    new AStar(grid, startX + 1, startY + 1, endX + 1, endY + 1, Heuristic.MANHATTAN, searchContext);
+            case GREEDY -> new Greedy(grid, startX + 1, startY + 1, endX + 1, endY + 1, searchContext);
+            case PATH_DATABASE ->
+                    new MoveTableWalk(grid, getPathDatabase(), startX + 1, startY + 1, endX + 1, endY + 1);
+            case FLOW_FIELD -> new MoveTableWalk(grid, getFlowField(), startX + 1, startY + 1, endX + 1, endY + 1);
+            case CORRIDOR -> new CorridorSearch(grid, getCorridorGraph(), startX + 1, startY + 1, endX + 1, endY + 1,
+                    searchContext);
+            case RECTANGLES -> new AStar(grid, startX + 1, startY + 1, endX + 1, endY + 1, Heuristic.MANHATTAN,
+                    getRectangles(), searchContext);
             default -> throw new IllegalStateException("Unexpected value: " + algorithm);
         };
+        stepsPerTick = STEPS_PER_TICK;
+        if (recording) startTrace(grid, ALGORITHM_TYPES[algorithm]);
+        searchToken = new CancellationToken();
+        searchAlgorithm.setCancellationToken(searchToken);
+        blocksGraphics.setColor(SEARCH_COLOR);
+        searchTimer.start();
+    }
+
+    /**
+     * Sets whether searches are recorded to trace files, which are named after the algorithm and the time and put in
+     * the working directory
+     * @param recording whether to record searches started from now on
+     */
+    public void setRecording(boolean recording) {
+        this.recording = recording;
+    }
+
+    /**
+     * Starts recording the search that is about to run
+     * @param grid the grid being searched
+     * @param algorithm the algorithm being run
+     */
+    private void startTrace(boolean[][] grid, AlgorithmType algorithm) {
+        Path file = Path.of("trace-" + algorithm.getName() + "-" + System.currentTimeMillis() + ".trace");
+        try {
+            traceWriter = new TraceWriter(file, algorithm.getName(), grid, startX + 1, startY + 1, endX + 1, endY + 1);
+            report("trace", "recording to " + file.toAbsolutePath());
+        } catch (IOException e) {
+            showTraceError("Cannot record the search: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Finishes recording the search, if it is being recorded
+     * @param path the path the search found, an empty array if it found none, or null if it was stopped
+     */
+    private void closeTrace(int[] path) {
+        if (traceWriter == null) return;
+        try (TraceWriter writer = traceWriter) {
+            traceWriter = null;
+            if (path != null) writer.writePath(path);
+        } catch (IOException e) {
+            showTraceError("Cannot finish recording the search: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Tells the user that recording a search failed. The search itself goes on.
+     * @param message what went wrong
+     */
+    private void showTraceError(String message) {
+        JOptionPane.showMessageDialog(this.getRootPane(), message, "Cannot record search", JOptionPane.ERROR_MESSAGE);
+    }
+
+    /**
+     * Plays back a search recorded to a trace file, reading it as it goes. The start and target are moved to where
+     * they were when the search was recorded.
+     * @param file the trace file
+     * @param speed number of cells to show each time the search timer fires
+     */
+    public void replay(Path file, int speed) {
+        TraceReader reader;
+        try {
+            reader = new TraceReader(file);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this.getRootPane(), "Could not read the trace: " + e.getMessage(),
+                    "Cannot replay trace", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        boolean[][] grid = versionedGrid.snapshot();
+        if (!reader.matches(grid)) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // nothing was read, so there is nothing to lose
+            }
+            JOptionPane.showMessageDialog(this.getRootPane(), "The trace was recorded on a different map",
+                    "Cannot replay trace", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        Main.enableButtons(false);
+        disabled = true;
+        clearPath();
+        startX = reader.getStart() / grid[0].length - 1;
+        startY = reader.getStart() % grid[0].length - 1;
+        endX = reader.getDest() / grid[0].length - 1;
+        endY = reader.getDest() % grid[0].length - 1;
+        report("trace", "replaying " + reader.getAlgorithm() + " search from " + file.getFileName());
+        searchAlgorithm = new TraceReplay(grid, reader);
+        stepsPerTick = Math.max(1, speed);
+        if (stepBuffer.length < stepsPerTick) stepBuffer = new int[stepsPerTick];
+        searchToken = new CancellationToken();
+        searchAlgorithm.setCancellationToken(searchToken);
         blocksGraphics.setColor(SEARCH_COLOR);
         searchTimer.start();
     }
 
+    /**
+     * Gets the path database for the current walls, building it if the walls changed since it was last built
+     * @return the path database
+     */
+    private CompressedPathDatabase getPathDatabase() {
+        if (pathDatabase == null) {
+            pathDatabase = CompressedPathDatabase.build(versionedGrid.snapshot());
+            report("path database", "path database: " + pathDatabase);
+        }
+        return pathDatabase;
+    }
+
+    /**
+     * Gets the corridor graph, building it if the grid was replaced since it was last built
+     * @return the corridor graph
+     */
+    private CorridorGraph getCorridorGraph() {
+        if (corridorGraph == null) {
+            // the graph is kept up to date with each edit, so it reads the live grid
+            corridorGraph = new CorridorGraph(versionedGrid.current());
+            report("corridors", corridorGraph.toString());
+        }
+        return corridorGraph;
+    }
+
+    /**
+     * Gets the empty rectangles of the current walls, splitting the grid again if the walls changed since they were
+     * last found
+     * @return the rectangles
+     */
+    private RectangleDecomposition getRectangles() {
+        if (rectangles == null) {
+            rectangles = new RectangleDecomposition(versionedGrid.snapshot());
+            report("rectangles", rectangles.toString());
+        }
+        return rectangles;
+    }
+
+    /**
+     * Gets the flow field to the target, building it if there is none or it goes somewhere else
+     * @return the flow field
+     */
+    private FlowField getFlowField() {
+        if (flowField == null || !flowField.goesTo(endX + 1, endY + 1)) {
+            // the flow field is kept up to date with each edit, so it reads the live grid
+            flowField = new FlowField(versionedGrid.current(), endX + 1, endY + 1);
+            report("flow field", flowField.toString());
+        }
+        return flowField;
+    }
+
     /**
      * Stop searching
      */
     public void stop() {
+        searchToken.cancel();
         searchTimer.stop();
         retraceTimer.stop();
+        closeTrace(null);
+        if (searchAlgorithm instanceof TraceReplay replay) replay.close();
         disabled = false;
         Main.enableButtons(true);
     }
@@ -580,11 +851,13 @@ public class GridPanel extends JComponent implements MouseListener, MouseMotionL
      * Clears the grid
      */
     public void reset() {
+        boolean[][] grid = versionedGrid.mutableGrid();
         for (int i = 1; i <= WIDTH; i++) {
             for (int j = 1; j <= HEIGHT; j++) {
                 grid[i][j] = false;
             }
         }
+        gridChanged();
         blocksGraphics.setColor(Color.WHITE);
         blocksGraphics.fillRect(0, 0, WIDTH * GRID_SIZE, HEIGHT * GRID_SIZE);
         repaint();
@@ -606,29 +879,36 @@ public class GridPanel extends JComponent implements MouseListener, MouseMotionL
 
     }
 
+    /**
+     * Flips the cell under the mouse between wall and empty. This is allowed while a search is running, since the
+     * search works on a snapshot of the grid.
+     */
+    private void toggleCellUnderMouse() {
+        // the search timer draws with the current color, so put it back afterwards
+        Color previous = blocksGraphics.getColor();
+        boolean wall = !versionedGrid.get(mouseX + 1, mouseY + 1);
+        versionedGrid.set(mouseX + 1, mouseY + 1, wall);
+        blocksGraphics.setColor(wall ? Color.BLACK : Color.WHITE);
+        cellChanged(mouseX + 1, mouseY + 1);
+        blocksGraphics.fillRect(mouseX * GRID_SIZE, mouseY * GRID_SIZE, GRID_SIZE, GRID_SIZE);
+        blocksGraphics.setColor(previous);
+        lastTileX = mouseX;
+        lastTileY = mouseY;
+        repaint();
+    }
+
     @Override
     public void mousePressed(MouseEvent e) {
-        if (disabled) return;
         if (mouseX == startX && mouseY == startY) {
-            onStart = true;
+            // the start and end cannot be moved during a search
+            if (!disabled) onStart = true;
             return;
         }
         if (mouseX == endX && mouseY == endY) {
-            onEnd = true;
+            if (!disabled) onEnd = true;
             return;
         }
-        // flip the value of current block, and set color appropriately
-        if (grid[mouseX +1][mouseY +1]) {
-            grid[mouseX +1][mouseY +1] = false;
-            blocksGraphics.setColor(Color.WHITE);
-        } else {
-            grid[mouseX +1][mouseY +1] = true;
-            blocksGraphics.setColor(Color.BLACK);
-        }
-        blocksGraphics.fillRect(mouseX * GRID_SIZE, mouseY * GRID_SIZE, GRID_SIZE, GRID_SIZE);
-        lastTileX = mouseX;
-        lastTileY = mouseY;
-        repaint();
+        toggleCellUnderMouse();
     }
 
     @Override
@@ -660,9 +940,6 @@ public class GridPanel extends JComponent implements MouseListener, MouseMotionL
         }
         // mouse is on
         mouseOn = true;
-        // don't do anything further if disabled
-        // (no need to repaint if disabled because the search algorithm timer is doing that)
-        if (disabled) return;
         if (onStart) {
             startX = mouseX;
             startY = mouseY;
@@ -676,17 +953,7 @@ public class GridPanel extends JComponent implements MouseListener, MouseMotionL
             return;
         }
         if (mouseX != lastTileX || mouseY != lastTileY) {
-            if (grid[mouseX + 1][mouseY + 1]) {
-                grid[mouseX + 1][mouseY + 1] = false;
-                blocksGraphics.setColor(Color.WHITE);
-            } else {
-                grid[mouseX + 1][mouseY + 1] = true;
-                blocksGraphics.setColor(Color.BLACK);
-            }
-            blocksGraphics.fillRect(mouseX * GRID_SIZE, mouseY * GRID_SIZE, GRID_SIZE, GRID_SIZE);
-            lastTileX = mouseX;
-            lastTileY = mouseY;
-            repaint();
+            toggleCellUnderMouse();
         }
     }
 
@@ -0,0 +1,30 @@
+package com.company;
+
+/**
+ * An estimate of the distance between a square and the destination. To keep A* returning the shortest path, the
+ * estimate should never be larger than the real distance.
+ * @see AStar
+ */
+@FunctionalInterface
+public interface Heuristic {
+
+    /**
+     * The manhattan distance, which is what A* uses if no other heuristic is given
+     */
+    Heuristic MANHATTAN = (x1, y1, x2, y2) -> Math.abs(y2 - y1) + Math.abs(x2 - x1);
+
+    /**
+     * No estimate at all, which makes A* search the closest squares first, like Dijkstra's algorithm
+     */
+    Heuristic NONE = (x1, y1, x2, y2) -> 0;
+
+    /**
+     * Estimates the distance between two squares
+     * @param x1 x coordinate of the square to estimate from
+     * @param y1 y coordinate of the square to estimate from
+     * @param x2 x coordinate of the destination
+     * @param y2 y coordinate of the destination
+     * @return the estimated distance
+     */
+    int estimate(int x1, int y1, int x2, int y2);
+}
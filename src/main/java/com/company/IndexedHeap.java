@@ -0,0 +1,141 @@
+package com.company;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A priority queue of ids from 0 up to a fixed capacity, ordered by a long key with the smallest key first. Like
+ * {@link CellHeap} it is a binary heap in plain arrays, but it also keeps where each id is in the heap, so an id can
+ * be removed or given a new key without searching for it. Each id can be in the heap at most once.
+ */
+public class IndexedHeap {
+
+    private final long[] keys;
+    private final int[] ids;
+
+    /**
+     * Position of each id in the heap, or -1 if it is not in the heap
+     */
+    private final int[] positions;
+    private int size;
+
+    /**
+     * Creates an empty heap
+     * @param capacity number of ids, which go from 0 to capacity - 1
+     */
+    public IndexedHeap(int capacity) {
+        keys = new long[capacity];
+        ids = new int[capacity];
+        positions = new int[capacity];
+        Arrays.fill(positions, -1);
+    }
+
+    /**
+     * Adds an id, or changes its key if it is already in the heap
+     * @param id the id
+     * @param key the priority, smallest first
+     */
+    public void add(int id, long key) {
+        int i = positions[id];
+        if (i == -1) {
+            i = size++;
+        } else if (key > keys[i]) {
+            siftDown(i, id, key);
+            return;
+        }
+        siftUp(i, id, key);
+    }
+
+    /**
+     * Removes an id, if it is in the heap
+     * @param id the id
+     */
+    public void remove(int id) {
+        int i = positions[id];
+        if (i == -1) return;
+        positions[id] = -1;
+        if (i == --size) return;
+        // move the last entry into the hole, then up or down to where it belongs
+        long key = keys[size];
+        int last = ids[size];
+        if (i > 0 && key < keys[(i - 1) >>> 1]) siftUp(i, last, key);
+        else siftDown(i, last, key);
+    }
+
+    /**
+     * @param id an id
+     * @return whether the id is in the heap
+     */
+    public boolean contains(int id) {
+        return positions[id] != -1;
+    }
+
+    /**
+     * @return the id with the smallest key
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public int peek() {
+        if (size == 0) throw new NoSuchElementException();
+        return ids[0];
+    }
+
+    /**
+     * Removes the id with the smallest key
+     * @return the id
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public int remove() {
+        int top = peek();
+        remove(top);
+        return top;
+    }
+
+    /**
+     * @return whether the heap is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the number of ids in the heap
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of bytes the heap takes for each id it can hold
+     */
+    static int bytesPerId() {
+        return Long.BYTES + 2 * Integer.BYTES;
+    }
+
+    private void siftUp(int i, int id, long key) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[parent] <= key) break;
+            place(i, ids[parent], keys[parent]);
+            i = parent;
+        }
+        place(i, id, key);
+    }
+
+    private void siftDown(int i, int id, long key) {
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && keys[child + 1] < keys[child]) child++;
+            if (key <= keys[child]) break;
+            place(i, ids[child], keys[child]);
+            i = child;
+        }
+        place(i, id, key);
+    }
+
+    private void place(int i, int id, long key) {
+        keys[i] = key;
+        ids[i] = id;
+        positions[id] = i;
+    }
+}
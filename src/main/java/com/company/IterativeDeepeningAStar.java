@@ -0,0 +1,227 @@
+package com.company;
+
+import java.awt.*;
+import java.util.Arrays;
+
+/**
+ * Iterative deepening A* (IDA*). Instead of keeping a list of every square waiting to be searched, it does a depth
+ * first search that gives up on any path whose estimated total cost is over a bound, and raises the bound to the
+ * lowest cost that went over it each time the search runs out of paths. Only the current path is kept, so the memory
+ * used grows with the length of the path instead of the size of the grid, and the path found is still the shortest.
+ * <p>
+ * Since it does not remember which squares it has seen, the same square can be searched many times through different
+ * paths. A transposition table of a fixed size can be given to remember the shortest distance each square was reached
+ * with in the current iteration, so paths that reach a square the long way are cut off.
+ * @see AStar
+ * @see MemoryBoundedAStar
+ */
+public class IterativeDeepeningAStar extends SearchAlgorithm {
+
+    /**
+     * Number of slots looked at in the transposition table before one is replaced
+     */
+    private static final int PROBES = 4;
+
+    private final Heuristic heuristic;
+    private final int start;
+    private final int destIndex;
+    /**
+     * Squares on the current path, from the start
+     */
+    private int[] path = new int[64];
+    /**
+     * The next direction to try from each square on the current path
+     */
+    private int[] tried = new int[64];
+    /**
+     * Index of the last square on the current path, or -1 if an iteration is about to start
+     */
+    private int depth = -1;
+    private int peakDepth;
+    /**
+     * The highest estimated cost allowed in this iteration
+     */
+    private int bound;
+    /**
+     * The lowest estimated cost that went over the bound in this iteration, which becomes the next bound
+     */
+    private int nextBound;
+    private int iteration;
+
+    /**
+     * Square stored in each slot of the transposition table, or null if there is no table
+     */
+    private final int[] tableCells;
+    /**
+     * Shortest distance each square in the table was reached with
+     */
+    private final int[] tableDistances;
+    /**
+     * Iteration each slot was written in. A slot from an earlier iteration counts as empty.
+     */
+    private final int[] tableIterations;
+    /**
+     * How far to shift the hash of a square to get its slot in the table
+     */
+    private final int tableShift;
+
+    public IterativeDeepeningAStar(boolean[][] grid, int x1, int y1, int x2, int y2) {
+        this(grid, x1, y1, x2, y2, 0, Heuristic.MANHATTAN);
+    }
+
+    /**
+     * Creates a search
+     * @param tableSize number of squares the transposition table can hold, rounded up to a power of two, or 0 for no
+     *                  table. Each slot takes 12 bytes.
+     * @param heuristic estimate of the distance to the destination, which should never be too large
+     */
+    public IterativeDeepeningAStar(boolean[][] grid, int x1, int y1, int x2, int y2, int tableSize,
+                                   Heuristic heuristic) {
+        super(grid, x1, y1, x2, y2);
+        if (tableSize < 0) throw new IllegalArgumentException("Table size cannot be negative: " + tableSize);
+        this.heuristic = heuristic;
+        start = x1 * height + y1;
+        destIndex = x2 * height + y2;
+        bound = heuristic.estimate(x1, y1, x2, y2);
+        if (tableSize > 0) {
+            int size = Integer.highestOneBit(Math.max(tableSize - 1, 1)) << 1;
+            tableCells = new int[size];
+            tableDistances = new int[size];
+            tableIterations = new int[size];
+            tableShift = Integer.numberOfLeadingZeros(size) + 1;
+        } else {
+            tableCells = null;
+            tableDistances = null;
+            tableIterations = null;
+            tableShift = 0;
+        }
+    }
+
+    /**
+     * Searches the next square on a path that is within the bound
+     * @return index of the square, or -1 if the search ended
+     */
+    @Override
+    protected int step() {
+        if (!beginStep()) return -1;
+        while (true) {
+            if (depth == -1) {
+                // start a new iteration from the start square
+                iteration++;
+                nextBound = Integer.MAX_VALUE;
+                depth = 0;
+                path[0] = start;
+                tried[0] = 0;
+                if (start == destIndex) finishPath();
+                return start;
+            }
+            if (tried[depth] == 4) {
+                // every direction from this square was tried, so go back
+                if (--depth == -1 && !raiseBound()) {
+                    end(SearchStatus.UNREACHABLE);
+                    return -1;
+                }
+                continue;
+            }
+            int curr = path[depth];
+            int d = tried[depth]++;
+            int x = curr / height + Direction.X[d];
+            int y = curr % height + Direction.Y[d];
+            int n = x * height + y;
+            // never step straight back to the square before
+            if (grid[x][y] || (depth > 0 && n == path[depth - 1])) continue;
+            int distance = depth + 1;
+            int cost = distance + heuristic.estimate(x, y, dest.x, dest.y);
+            if (cost > bound) {
+                if (cost < nextBound) nextBound = cost;
+                continue;
+            }
+            if (tableCells != null && !offer(n, distance)) continue;
+            push(n);
+            if (n == destIndex) finishPath();
+            return n;
+        }
+    }
+
+    /**
+     * Raises the bound after an iteration found no path
+     * @return false if there is no higher bound to try, so the destination cannot be reached
+     */
+    private boolean raiseBound() {
+        // a path that does not visit a square twice cannot be longer than the number of squares
+        if (nextBound == Integer.MAX_VALUE || nextBound > grid.length * height) return false;
+        bound = nextBound;
+        return true;
+    }
+
+    private void push(int cell) {
+        depth++;
+        if (depth == path.length) {
+            path = Arrays.copyOf(path, depth * 2);
+            tried = Arrays.copyOf(tried, depth * 2);
+        }
+        path[depth] = cell;
+        tried[depth] = 0;
+        if (depth > peakDepth) peakDepth = depth;
+    }
+
+    /**
+     * Records that a square was reached, unless it was already reached at least as quickly in this iteration
+     * @param cell index of the square
+     * @param distance distance the square was reached with
+     * @return true if the square should be searched
+     */
+    private boolean offer(int cell, int distance) {
+        int mask = tableCells.length - 1;
+        int first = cell * 0x9E3779B9 >>> tableShift;
+        // if every slot is taken, the first one is replaced
+        int free = first;
+        for (int probe = 0, i = first; probe < PROBES; probe++, i = (i + 1) & mask) {
+            if (tableIterations[i] != iteration) {
+                free = i;
+                break;
+            }
+            if (tableCells[i] == cell) {
+                if (tableDistances[i] <= distance) return false;
+                tableDistances[i] = distance;
+                return true;
+            }
+        }
+        tableCells[free] = cell;
+        tableDistances[free] = distance;
+        tableIterations[free] = iteration;
+        return true;
+    }
+
+    private void finishPath() {
+        State state = null;
+        for (int i = 0; i <= depth; i++) {
+            state = new State(new Point(path[i] / height, path[i] % height), state);
+        }
+        finish(state);
+    }
+
+    /**
+     * @return the number of iterations started so far
+     */
+    public int getIterations() {
+        return iteration;
+    }
+
+    /**
+     * @return the longest the current path has been
+     */
+    public int getPeakDepth() {
+        return peakDepth;
+    }
+
+    /**
+     * Gets the most memory the search has needed: the arrays holding the current path and the transposition table
+     * @return the number of bytes
+     */
+    public long getPeakBytes() {
+        long bytes = (long) path.length * 2 * Integer.BYTES;
+        if (tableCells != null) bytes += (long) tableCells.length * 3 * Integer.BYTES;
+        return bytes;
+    }
+}
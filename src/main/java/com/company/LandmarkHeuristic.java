@@ -0,0 +1,228 @@
+package com.company;
+
+import java.awt.*;
+import java.util.Arrays;
+
+/**
+ * A heuristic using landmarks (also called ALT, for A*, Landmarks, and Triangle inequality). A few landmark squares
+ * are picked ahead of time, and the real distance from every landmark to every square is stored in a table. Because
+ * of the triangle inequality, the difference between the distances of two squares to a landmark can never be larger
+ * than the distance between the two squares, so it is a valid heuristic. In mazes, this is usually a much better
+ * estimate than the manhattan distance, which ignores the walls.
+ * <p>
+ * The tables are a copy of the grid at the time the heuristic was made, so a new one should be made after the walls
+ * change.
+ * @see AStar
+ */
+public class LandmarkHeuristic implements Heuristic {
+
+    /**
+     * Height of the grid, used to turn coordinates into an index of the tables
+     */
+    private final int height;
+
+    /**
+     * Locations of the landmarks
+     */
+    private final Point[] landmarks;
+
+    /**
+     * One table per landmark. Each table holds the distance from the landmark to every square, stored at index
+     * {@code x * height + y}, or -1 if the square cannot be reached from the landmark.
+     */
+    private final int[][] tables;
+
+    /**
+     * How long picking the landmarks and filling the tables took, in nanoseconds
+     */
+    private final long preprocessingNanos;
+
+    /**
+     * Picks the landmarks and computes the distance tables
+     * @param grid the grid to search, true if there is a wall
+     * @param count number of landmarks to pick. More landmarks give better estimates, but use more memory. Fewer are
+     *              picked if the largest connected area does not have room for that many.
+     */
+    public LandmarkHeuristic(boolean[][] grid, int count) {
+        if (count < 1) throw new IllegalArgumentException("Need at least one landmark: " + count);
+        long start = System.nanoTime();
+        height = grid[0].length;
+        int[] queue = new int[grid.length * height];
+        // start from the largest connected area; the first landmark is the square farthest from it
+        int seed = largestAreaSquare(grid, queue);
+        if (seed == -1) throw new IllegalArgumentException("Grid has no open squares");
+        // distance from each square to the closest landmark, which is only the seed until the first one is picked
+        int[] minDistance = distancesFrom(grid, seed, queue);
+        Point[] picked = new Point[count];
+        int[][] pickedTables = new int[count][];
+        int n = 0;
+        for (; n < count; n++) {
+            // farthest point selection: the next landmark is the square farthest from all the previous ones
+            int farthest = -1;
+            for (int i = 0; i < minDistance.length; i++) {
+                if (minDistance[i] > 0 && (farthest == -1 || minDistance[i] > minDistance[farthest])) farthest = i;
+            }
+            if (farthest == -1) break; // fewer open squares than landmarks
+            picked[n] = new Point(farthest / height, farthest % height);
+            pickedTables[n] = distancesFrom(grid, farthest, queue);
+            if (n == 0) {
+                // the seed is not a landmark, so the squares near it should not be passed over
+                minDistance = pickedTables[0].clone();
+                continue;
+            }
+            for (int i = 0; i < minDistance.length; i++) {
+                if (pickedTables[n][i] < minDistance[i]) minDistance[i] = pickedTables[n][i];
+            }
+        }
+        if (n == 0) {
+            // only one open square, so it is the only possible landmark
+            picked[0] = new Point(seed / height, seed % height);
+            pickedTables[0] = distancesFrom(grid, seed, queue);
+            n = 1;
+        }
+        // there might have been room for fewer landmarks than asked for
+        landmarks = Arrays.copyOf(picked, n);
+        tables = Arrays.copyOf(pickedTables, n);
+        preprocessingNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Finds a square in the largest connected area of open squares, so the landmarks are not wasted on a small
+     * pocket that is cut off from everything else
+     * @param grid the grid to search
+     * @param queue scratch space large enough to hold every square
+     * @return index of the square, or -1 if there are no open squares
+     */
+    private int largestAreaSquare(boolean[][] grid, int[] queue) {
+        boolean[] seen = new boolean[queue.length];
+        int best = -1;
+        int bestSize = 0;
+        for (int i = 0; i < queue.length; i++) {
+            if (seen[i] || grid[i / height][i % height]) continue;
+            seen[i] = true;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = i;
+            while (head < tail) {
+                int curr = queue[head++];
+                int x = curr / height;
+                int y = curr % height;
+                if (!grid[x-1][y] && !seen[curr - height]) {
+                    seen[curr - height] = true;
+                    queue[tail++] = curr - height;
+                }
+                if (!grid[x][y-1] && !seen[curr - 1]) {
+                    seen[curr - 1] = true;
+                    queue[tail++] = curr - 1;
+                }
+                if (!grid[x][y+1] && !seen[curr + 1]) {
+                    seen[curr + 1] = true;
+                    queue[tail++] = curr + 1;
+                }
+                if (!grid[x+1][y] && !seen[curr + height]) {
+                    seen[curr + height] = true;
+                    queue[tail++] = curr + height;
+                }
+            }
+            if (tail > bestSize) {
+                bestSize = tail;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Breadth first search from one square to every other square
+     * @param grid the grid to search
+     * @param source index of the square to start from
+     * @param queue scratch space large enough to hold every square
+     * @return the distance table, -1 for squares that cannot be reached
+     */
+    private int[] distancesFrom(boolean[][] grid, int source, int[] queue) {
+        int[] distances = new int[queue.length];
+        Arrays.fill(distances, -1);
+        distances[source] = 0;
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+        while (head < tail) {
+            int curr = queue[head++];
+            int x = curr / height;
+            int y = curr % height;
+            int distance = distances[curr] + 1;
+            if (!grid[x-1][y] && distances[curr - height] == -1) {
+                distances[curr - height] = distance;
+                queue[tail++] = curr - height;
+            }
+            if (!grid[x][y-1] && distances[curr - 1] == -1) {
+                distances[curr - 1] = distance;
+                queue[tail++] = curr - 1;
+            }
+            if (!grid[x][y+1] && distances[curr + 1] == -1) {
+                distances[curr + 1] = distance;
+                queue[tail++] = curr + 1;
+            }
+            if (!grid[x+1][y] && distances[curr + height] == -1) {
+                distances[curr + height] = distance;
+                queue[tail++] = curr + height;
+            }
+        }
+        return distances;
+    }
+
+    @Override
+    public int estimate(int x1, int y1, int x2, int y2) {
+        int best = MANHATTAN.estimate(x1, y1, x2, y2);
+        int from = x1 * height + y1;
+        int to = x2 * height + y2;
+        for (int[] table : tables) {
+            int a = table[from];
+            int b = table[to];
+            // a square the landmark cannot reach tells us nothing
+            if (a >= 0 && b >= 0) {
+                int diff = Math.abs(a - b);
+                if (diff > best) best = diff;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return the locations of the landmarks, in the order they were picked
+     */
+    public Point[] getLandmarks() {
+        Point[] copy = new Point[landmarks.length];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = new Point(landmarks[i]);
+        }
+        return copy;
+    }
+
+    /**
+     * @return how long picking the landmarks and filling the tables took, in nanoseconds
+     */
+    public long getPreprocessingNanos() {
+        return preprocessingNanos;
+    }
+
+    /**
+     * @return the number of bytes each landmark's distance table takes
+     */
+    public long getBytesPerLandmark() {
+        return (long) tables[0].length * Integer.BYTES;
+    }
+
+    /**
+     * @return the number of bytes all the distance tables take
+     */
+    public long getTotalBytes() {
+        return getBytesPerLandmark() * tables.length;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d landmarks, %.2f ms to preprocess, %d bytes per landmark (%d total)",
+                tables.length, preprocessingNanos / 1e6, getBytesPerLandmark(), getTotalBytes());
+    }
+}
@@ -0,0 +1,78 @@
+package com.company;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts how long things take, in buckets that double in size: bucket i holds times from 2^(i-1) up to 2^i
+ * microseconds. Recording a time is a single atomic add, so many threads can record at once without a lock, and the
+ * percentiles it reports are at most a factor of two too high.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 40;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records one time
+     * @param nanos the time, in nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = Math.max(nanos / 1000, 0);
+        int bucket = Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+        counts.incrementAndGet(bucket);
+        total.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * @return the number of times recorded
+     */
+    public long count() {
+        return total.get();
+    }
+
+    /**
+     * @return the longest time recorded, in nanoseconds
+     */
+    public long max() {
+        return maxNanos.get();
+    }
+
+    /**
+     * @return the average time recorded, in nanoseconds, or 0 if none were recorded
+     */
+    public double mean() {
+        long count = total.get();
+        return count == 0 ? 0 : (double) totalNanos.get() / count;
+    }
+
+    /**
+     * Gets a time that at least some fraction of the recorded times are below
+     * @param fraction between 0 and 1, such as 0.99 for the 99th percentile
+     * @return the upper edge of the bucket the percentile falls in, in nanoseconds, or 0 if nothing was recorded
+     */
+    public long percentile(double fraction) {
+        long count = total.get();
+        if (count == 0) return 0;
+        long rank = (long) Math.ceil(fraction * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min((1L << i) * 1000, max());
+        }
+        return max();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms max=%.3fms",
+                count(), mean() / 1e6, percentile(0.5) / 1e6, percentile(0.9) / 1e6, percentile(0.99) / 1e6,
+                max() / 1e6);
+    }
+}
@@ -18,10 +18,19 @@ public class Main {
     private static JButton dfsMaze;
     private static JButton ellerMaze;
     private static JButton kruskalMaze;
+    private static JButton caves;
     private static JButton depthFirstSearch;
     private static JButton breadthFirstSearch;
     private static JButton aStar;
     private static JButton greedy;
+    private static JButton pathDatabase;
+    private static JButton flowField;
+    private static JButton corridor;
+    private static JButton rectangles;
+    private static JCheckBox record;
+    private static JButton replay;
+    private static JSpinner replaySpeed;
+    private static JCheckBox overlay;
 
 
     public static void main(String[] args) {
@@ -50,10 +59,20 @@ public class Main {
         dfsMaze = new JButton("DFS Maze");
         kruskalMaze = new JButton("Kruskal Maze");
         ellerMaze = new JButton("Eller Maze");
+        caves = new JButton("Caves");
         depthFirstSearch = new JButton("DFS");
         breadthFirstSearch = new JButton("BFS");
         aStar = new JButton("A*");
         greedy = new JButton("Greedy");
+        pathDatabase = new JButton("Path DB");
+        flowField = new JButton("Flow field");
+        corridor = new JButton("Corridors");
+        rectangles = new JButton("Rectangles");
+        record = new JCheckBox("Record");
+        replay = new JButton("Replay...");
+        // number of cells shown each tick when replaying
+        replaySpeed = new JSpinner(new SpinnerNumberModel(1, 1, 10000, 1));
+        overlay = new JCheckBox("Stats");
 
         stop.addActionListener(e -> gp.stop());
         clearBoard.addActionListener(e -> gp.reset());
@@ -62,10 +81,23 @@ public class Main {
         dfsMaze.addActionListener(e -> gp.dfsMaze());
         kruskalMaze.addActionListener(e -> gp.kruskalMaze());
         ellerMaze.addActionListener(e -> gp.ellerMaze());
+        caves.addActionListener(e -> gp.caves());
         depthFirstSearch.addActionListener(e -> gp.search(GridPanel.DFS));
         breadthFirstSearch.addActionListener(e -> gp.search(GridPanel.BFS));
         aStar.addActionListener(e -> gp.search(GridPanel.A_STAR));
         greedy.addActionListener(e -> gp.search(GridPanel.GREEDY));
+        pathDatabase.addActionListener(e -> gp.search(GridPanel.PATH_DATABASE));
+        flowField.addActionListener(e -> gp.search(GridPanel.FLOW_FIELD));
+        corridor.addActionListener(e -> gp.search(GridPanel.CORRIDOR));
+        rectangles.addActionListener(e -> gp.search(GridPanel.RECTANGLES));
+        record.addActionListener(e -> gp.setRecording(record.isSelected()));
+        overlay.addActionListener(e -> gp.setOverlayVisible(overlay.isSelected()));
+        replay.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser(".");
+            if (chooser.showOpenDialog(f) == JFileChooser.APPROVE_OPTION) {
+                gp.replay(chooser.getSelectedFile().toPath(), (Integer) replaySpeed.getValue());
+            }
+        });
 
         controls.add(stop);
         controls.add(clearBoard);
@@ -74,10 +106,19 @@ public class Main {
         controls.add(dfsMaze);
         controls.add(kruskalMaze);
         controls.add(ellerMaze);
+        controls.add(caves);
         controls.add(depthFirstSearch);
         controls.add(breadthFirstSearch);
         controls.add(aStar);
         controls.add(greedy);
+        controls.add(pathDatabase);
+        controls.add(flowField);
+        controls.add(corridor);
+        controls.add(rectangles);
+        controls.add(record);
+        controls.add(replay);
+        controls.add(replaySpeed);
+        controls.add(overlay);
 
         mainPanel.add(controls);
         f.setContentPane(mainPanel);
@@ -98,10 +139,17 @@ public class Main {
         dfsMaze.setEnabled(isEnabled);
         kruskalMaze.setEnabled(isEnabled);
         ellerMaze.setEnabled(isEnabled);
+        caves.setEnabled(isEnabled);
         depthFirstSearch.setEnabled(isEnabled);
         breadthFirstSearch.setEnabled(isEnabled);
         aStar.setEnabled(isEnabled);
         greedy.setEnabled(isEnabled);
+        pathDatabase.setEnabled(isEnabled);
+        flowField.setEnabled(isEnabled);
+        corridor.setEnabled(isEnabled);
+        rectangles.setEnabled(isEnabled);
+        record.setEnabled(isEnabled);
+        replay.setEnabled(isEnabled);
         // stop button is tne one enabled when the others are disabled
         stop.setEnabled(!isEnabled);
     }
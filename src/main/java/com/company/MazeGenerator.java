@@ -0,0 +1,277 @@
+package com.company;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Fills grids of any size with random walls or mazes. The grids have a border of walls around them, like every other
+ * grid in this program, and only the squares inside the border are changed.
+ * <p>
+ * The mazes are made of rooms on the squares with odd coordinates, with walls between them that are knocked down to
+ * connect the rooms. If the width or height inside the border is even, the last column or row has no rooms and is
+ * left as a wall. None of the generators allocate anything for each square except plain arrays, so they can fill
+ * grids with hundreds of millions of squares.
+ */
+public final class MazeGenerator {
+
+    /**
+     * Table to get the x step between rooms given a direction between 0 and 4 exclusive
+     */
+    private static final int[] X_DIR = {-2, 0, 0, 2};
+
+    /**
+     * Table to get the y step between rooms given a direction between 0 and 4 exclusive
+     */
+    private static final int[] Y_DIR = {0, -2, 2, 0};
+
+    private MazeGenerator() {}
+
+    /**
+     * Fills the grid with walls at random
+     * @param grid the grid to fill
+     * @param density the chance that each square is a wall
+     * @param rand the random number generator to use
+     */
+    public static void fillRandom(boolean[][] grid, double density, Random rand) {
+        int width = grid.length - 2;
+        int height = grid[0].length - 2;
+        for (int i = 1; i <= width; i++) {
+            boolean[] column = grid[i];
+            for (int j = 1; j <= height; j++) {
+                column[j] = rand.nextDouble() < density;
+            }
+        }
+    }
+
+    /**
+     * Fills the grid with a maze generated using depth first search. Instead of a stack of squares, each room
+     * remembers which direction it was entered from, so the search backtracks by walking back through the rooms, and
+     * the only extra memory is one byte for each room.
+     * @param grid the grid to fill
+     * @param rand the random number generator to use
+     */
+    public static void dfsMaze(boolean[][] grid, Random rand) {
+        int width = grid.length - 2;
+        int height = grid[0].length - 2;
+        fill(grid, true);
+        int roomsHigh = (height + 1) / 2;
+        // direction each room was entered from, which is also how the search knows the room was visited
+        byte[] from = new byte[((width + 1) / 2) * roomsHigh];
+        int[] choices = new int[4];
+        int x = 1;
+        int y = 1;
+        grid[x][y] = false;
+        from[0] = -1;
+        while (true) {
+            // pick a random room next to this one that was not visited yet
+            int count = 0;
+            for (int d = 0; d < 4; d++) {
+                int nx = x + X_DIR[d];
+                int ny = y + Y_DIR[d];
+                if (nx >= 1 && nx <= width && ny >= 1 && ny <= height && grid[nx][ny]) choices[count++] = d;
+            }
+            if (count > 0) {
+                int d = choices[rand.nextInt(count)];
+                // knock down the wall between the rooms
+                grid[x + X_DIR[d] / 2][y + Y_DIR[d] / 2] = false;
+                x += X_DIR[d];
+                y += Y_DIR[d];
+                grid[x][y] = false;
+                from[(x / 2) * roomsHigh + y / 2] = (byte) d;
+            } else {
+                int d = from[(x / 2) * roomsHigh + y / 2];
+                if (d == -1) break;
+                x -= X_DIR[d];
+                y -= Y_DIR[d];
+            }
+        }
+    }
+
+    /**
+     * Generate a maze using Eller's algorithm. Since the algorithm only looks at one row at a time, a cool property
+     * is that it can generate infinitely long mazes forever! Here a row is a column of the grid, and the only memory
+     * needed is a few arrays the size of one column.
+     * <p>
+     * Each room in the current row belongs to a set of rooms that are connected. The set is named after one of the
+     * rooms in it, and the rooms of a set are linked in a circle, so two sets are joined by splicing their circles
+     * together and renaming the rooms of the smaller one.
+     * @param grid the grid to fill
+     * @param rand the random number generator to use
+     */
+    public static void ellerMaze(boolean[][] grid, Random rand) {
+        int width = grid.length - 2;
+        int height = grid[0].length - 2;
+        fill(grid, false);
+        // if the width or height is even, the last column or row has no rooms
+        int lastRow = width % 2 == 1 ? width : width - 1;
+        if (lastRow < width) Arrays.fill(grid[width], 1, height + 1, true);
+        if (height % 2 == 0) {
+            for (int i = 1; i <= width; i++) grid[i][height] = true;
+        }
+        final int size = (height + 1) / 2;
+        // name of the set each room is in
+        int[] set = new int[size];
+        // next room in the same set
+        int[] next = new int[size];
+        // number of rooms in each set, by name
+        int[] setSize = new int[size];
+        // when each room was last handed out bottom walls
+        int[] visited = new int[size];
+        int[] members = new int[size];
+        for (int j = 0; j < size; j++) {
+            set[j] = j;
+            next[j] = j;
+            setSize[j] = 1;
+        }
+
+        // process all rows but last
+        int row = 0;
+        for (int i = 1; i < lastRow; i += 2) {
+            row++;
+            for (int j = 1; j < size; j++) {
+                if (set[j - 1] != set[j] && rand.nextInt(5) < 3) {
+                    join(set, next, setSize, j - 1, j);
+                } else {
+                    // make wall
+                    grid[i][j * 2] = true;
+                }
+            }
+            // randomly add bottom walls for each set
+            for (int j = 0; j < size; j++) {
+                if (visited[j] == row) continue;
+                int count = 0;
+                int k = j;
+                do {
+                    visited[k] = row;
+                    members[count++] = k;
+                    k = next[k];
+                } while (k != j);
+                // At least one room per set keeps a way down
+                int numToKeep = count == 1 ? 1 : rand.nextInt(count / 2) + 1;
+                for (int m = 0; m < numToKeep; m++) {
+                    int pick = m + rand.nextInt(count - m);
+                    int temp = members[m];
+                    members[m] = members[pick];
+                    members[pick] = temp;
+                }
+                // the rooms that keep a way down stay in the set, which is renamed after one of them
+                int name = members[0];
+                for (int m = 0; m < numToKeep; m++) {
+                    set[members[m]] = name;
+                    next[members[m]] = members[(m + 1) % numToKeep];
+                }
+                setSize[name] = numToKeep;
+                // the rest are walled off below, and the rooms below them start new sets
+                for (int m = numToKeep; m < count; m++) {
+                    int room = members[m];
+                    grid[i + 1][room * 2 + 1] = true;
+                    set[room] = room;
+                    next[room] = room;
+                    setSize[room] = 1;
+                }
+            }
+            // walls on bottom
+            for (int j = 2; j < height; j += 2) {
+                grid[i + 1][j] = true;
+            }
+        }
+        // last iteration
+        for (int j = 1; j < size; j++) {
+            if (set[j] == set[j - 1]) {
+                // add wall
+                grid[lastRow][j * 2] = true;
+            } else {
+                join(set, next, setSize, j - 1, j);
+            }
+        }
+    }
+
+    /**
+     * Joins the sets of two rooms in the same row of Eller's algorithm
+     * @param set name of the set each room is in
+     * @param next next room in the same set
+     * @param setSize number of rooms in each set, by name
+     * @param a a room in the first set
+     * @param b a room in the second set
+     */
+    private static void join(int[] set, int[] next, int[] setSize, int a, int b) {
+        if (setSize[set[a]] < setSize[set[b]]) {
+            int temp = a;
+            a = b;
+            b = temp;
+        }
+        int name = set[a];
+        setSize[name] += setSize[set[b]];
+        // rename the smaller set
+        int k = b;
+        do {
+            set[k] = name;
+            k = next[k];
+        } while (k != b);
+        // splice the two circles together
+        int temp = next[a];
+        next[a] = next[b];
+        next[b] = temp;
+    }
+
+    /**
+     * Generate a maze using randomized Kruskal's algorithm. Each wall between two rooms is stored as a single int: the
+     * index of the room above or to the left of it, times two, plus one if the wall is below the room instead of to
+     * the right of it.
+     * @param grid the grid to fill
+     * @param rand the random number generator to use
+     */
+    public static void kruskalMaze(boolean[][] grid, Random rand) {
+        int width = grid.length - 2;
+        int height = grid[0].length - 2;
+        fill(grid, true);
+        int roomsWide = (width + 1) / 2;
+        int roomsHigh = (height + 1) / 2;
+        int[] edges = new int[(roomsWide - 1) * roomsHigh + roomsWide * (roomsHigh - 1)];
+        int count = 0;
+        for (int i = 0; i < roomsWide; i++) {
+            for (int j = 0; j < roomsHigh; j++) {
+                int room = i * roomsHigh + j;
+                if (i + 1 < roomsWide) edges[count++] = room * 2;
+                if (j + 1 < roomsHigh) edges[count++] = room * 2 + 1;
+            }
+        }
+        // Fisher Yates shuffle
+        for (int i = count - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            int temp = edges[i];
+            edges[i] = edges[j];
+            edges[j] = temp;
+        }
+        DisjointSetUnion set = new DisjointSetUnion(roomsWide * roomsHigh);
+        // a grid with only one room has no walls to knock down
+        grid[1][1] = false;
+        // carve it out
+        for (int edge : edges) {
+            int room1 = edge >>> 1;
+            int room2 = (edge & 1) == 0 ? room1 + roomsHigh : room1 + 1;
+            if (set.get(room1) != set.get(room2)) {
+                set.unite(room1, room2);
+                int x1 = room1 / roomsHigh * 2 + 1;
+                int y1 = room1 % roomsHigh * 2 + 1;
+                int x2 = room2 / roomsHigh * 2 + 1;
+                int y2 = room2 % roomsHigh * 2 + 1;
+                grid[(x1 + x2) / 2][(y1 + y2) / 2] = false;
+                grid[x1][y1] = false;
+                grid[x2][y2] = false;
+            }
+        }
+    }
+
+    /**
+     * Sets every square inside the border
+     * @param grid the grid to fill
+     * @param wall whether the squares should be walls
+     */
+    private static void fill(boolean[][] grid, boolean wall) {
+        int height = grid[0].length - 2;
+        for (int i = 1; i < grid.length - 1; i++) {
+            Arrays.fill(grid[i], 1, height + 1, wall);
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package com.company;
+
+import java.awt.*;
+import java.util.Arrays;
+
+/**
+ * Simplified memory-bounded A* (SMA*). It works like A*, except that it keeps a tree of paths instead of a table of
+ * every square, and the tree can only hold a fixed number of nodes. When the tree is full, the leaf with the highest
+ * estimated cost is dropped, and its parent remembers that cost so the leaf is only made again if every other path
+ * turns out to be worse.
+ * <p>
+ * If there are enough nodes to hold the shortest path, that is the path found. A path that would need more nodes than
+ * the cap cannot be found, and if that is the only way to the destination the search ends with
+ * {@link SearchStatus#OUT_OF_BUDGET}.
+ * @see AStar
+ * @see IterativeDeepeningAStar
+ */
+public class MemoryBoundedAStar extends SearchAlgorithm {
+
+    /**
+     * Estimated cost that means there is no path through a node
+     */
+    private static final int INFINITY = Integer.MAX_VALUE;
+
+    private final Heuristic heuristic;
+    private final int destIndex;
+    private final int maxNodes;
+
+    // Each node is an index into these arrays
+
+    /**
+     * Square of each node
+     */
+    private final int[] cells;
+    /**
+     * Distance from the start to each node
+     */
+    private final int[] distances;
+    /**
+     * Estimated total cost of each node, raised to the lowest cost of its children once they are all known
+     */
+    private final int[] costs;
+    /**
+     * Parent of each node, or -1 for the root
+     */
+    private final int[] parents;
+    /**
+     * Child of each node in each direction, or -1 if the child is not in the tree
+     */
+    private final int[] children;
+    /**
+     * Cost each dropped child had, in the same layout as {@link #children}, or 0 if it was never dropped
+     */
+    private final int[] forgotten;
+    /**
+     * Bit set for each direction whose child still needs to be made, either for the first time or again after it was
+     * dropped
+     */
+    private final byte[] pending;
+    /**
+     * Bit set for each direction whose child has never been made
+     */
+    private final byte[] fresh;
+    /**
+     * Node indexes that are not in use, as a stack
+     */
+    private final int[] free;
+    private int freeCount;
+    private int nodeCount;
+    private int peakNodes;
+    /**
+     * Whether any node was given up on because a longer path would not fit in the tree
+     */
+    private boolean tooDeep;
+
+    /**
+     * Nodes that have children still to make, lowest cost and then deepest first
+     */
+    private final IndexedHeap open;
+    /**
+     * Nodes with no children in the tree, highest cost and then shallowest first, which is the order they are
+     * dropped in
+     */
+    private final IndexedHeap leaves;
+    /**
+     * The node with the shortest distance for each square in the tree, as a hash table with linear probing. A square
+     * is not added again through a path that is no shorter, which keeps the tree from filling up with different paths
+     * to the same squares. There is at most one entry for each node, and the table has at least twice as many slots
+     * as there are nodes, so it is never more than half full.
+     */
+    private final int[] tableCells;
+    private final int[] tableNodes;
+    private final int tableMask;
+
+    public MemoryBoundedAStar(boolean[][] grid, int x1, int y1, int x2, int y2, int maxNodes) {
+        this(grid, x1, y1, x2, y2, maxNodes, Heuristic.MANHATTAN);
+    }
+
+    /**
+     * Creates a search
+     * @param maxNodes most nodes the tree can hold, at least 3. Each node takes about 100 bytes.
+     * @param heuristic estimate of the distance to the destination, which should never be too large
+     */
+    public MemoryBoundedAStar(boolean[][] grid, int x1, int y1, int x2, int y2, int maxNodes, Heuristic heuristic) {
+        super(grid, x1, y1, x2, y2);
+        if (maxNodes < 3) throw new IllegalArgumentException("Need room for at least 3 nodes: " + maxNodes);
+        this.heuristic = heuristic;
+        this.maxNodes = maxNodes;
+        destIndex = x2 * height + y2;
+        cells = new int[maxNodes];
+        distances = new int[maxNodes];
+        costs = new int[maxNodes];
+        parents = new int[maxNodes];
+        children = new int[maxNodes * 4];
+        forgotten = new int[maxNodes * 4];
+        pending = new byte[maxNodes];
+        fresh = new byte[maxNodes];
+        free = new int[maxNodes];
+        for (int i = 0; i < maxNodes; i++) {
+            free[i] = maxNodes - 1 - i;
+        }
+        freeCount = maxNodes;
+        open = new IndexedHeap(maxNodes);
+        leaves = new IndexedHeap(maxNodes);
+        int slots = Integer.highestOneBit(maxNodes) * 4;
+        tableCells = new int[slots];
+        tableNodes = new int[slots];
+        tableMask = slots - 1;
+        Arrays.fill(tableCells, -1);
+        int root = newNode(x1 * height + y1, 0, heuristic.estimate(x1, y1, x2, y2), -1);
+        putNode(cells[root], root);
+        addToSets(root);
+    }
+
+    /**
+     * Makes a node
+     * @return index of the node
+     */
+    private int newNode(int cell, int distance, int cost, int parent) {
+        int node = free[--freeCount];
+        nodeCount++;
+        if (nodeCount > peakNodes) peakNodes = nodeCount;
+        cells[node] = cell;
+        distances[node] = distance;
+        parents[node] = parent;
+        Arrays.fill(children, node * 4, node * 4 + 4, -1);
+        Arrays.fill(forgotten, node * 4, node * 4 + 4, 0);
+        int x = cell / height;
+        int y = cell % height;
+        int parentCell = parent == -1 ? -1 : cells[parent];
+        int directions = 0;
+        for (int d = 0; d < 4; d++) {
+            int nx = x + Direction.X[d];
+            int ny = y + Direction.Y[d];
+            // never step straight back to the parent
+            if (!grid[nx][ny] && nx * height + ny != parentCell) directions |= 1 << d;
+        }
+        pending[node] = (byte) directions;
+        fresh[node] = (byte) directions;
+        if (cell != destIndex && directions == 0) {
+            // a dead end
+            cost = INFINITY;
+        } else if (cell != destIndex && distance >= maxNodes - 1) {
+            // the path would not fit in the tree
+            cost = INFINITY;
+            tooDeep = true;
+        }
+        costs[node] = cost;
+        return node;
+    }
+
+    private void addToSets(int node) {
+        // costs are never negative, so the cost goes in the high half of the key and the tie breaker in the low half
+        if (pending[node] != 0 || cells[node] == destIndex) {
+            open.add(node, (long) costs[node] << 32 | Integer.MAX_VALUE - distances[node]);
+        }
+        if (isLeaf(node)) leaves.add(node, (long) (INFINITY - costs[node]) << 32 | distances[node]);
+    }
+
+    private void removeFromSets(int node) {
+        open.remove(node);
+        leaves.remove(node);
+    }
+
+    private boolean isLeaf(int node) {
+        for (int d = 0; d < 4; d++) {
+            if (children[node * 4 + d] != -1) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Makes one more node in the tree
+     * @return the square of the node, or -1 if the search ended
+     */
+    @Override
+    protected int step() {
+        if (!beginStep()) return -1;
+        while (true) {
+            if (open.isEmpty() || costs[open.peek()] == INFINITY) {
+                end(tooDeep ? SearchStatus.OUT_OF_BUDGET : SearchStatus.UNREACHABLE);
+                return -1;
+            }
+            int best = open.peek();
+            if (cells[best] == destIndex) {
+                finish(chainTo(best));
+                return cells[best];
+            }
+            int d = nextDirection(best);
+            int x = cells[best] / height + Direction.X[d];
+            int y = cells[best] % height + Direction.Y[d];
+            int cell = x * height + y;
+            int distance = distances[best] + 1;
+            int existing = nodeAt(cell);
+            if (existing != -1 && distances[existing] <= distance) {
+                // the square is already in the tree through a path that is no longer, so this way leads nowhere new
+                removeFromSets(best);
+                pending[best] &= (byte) ~(1 << d);
+                fresh[best] &= (byte) ~(1 << d);
+                forgotten[best * 4 + d] = INFINITY;
+                addToSets(best);
+                backUp(best);
+                continue;
+            }
+            if (nodeCount == maxNodes) dropWorstLeaf(best);
+            removeFromSets(best);
+            pending[best] &= (byte) ~(1 << d);
+            fresh[best] &= (byte) ~(1 << d);
+            // the cost can never be lower than the parent's, and not lower than it was before being dropped
+            int cost = Math.max(Math.max(costs[best], distance + heuristic.estimate(x, y, dest.x, dest.y)),
+                    forgotten[best * 4 + d]);
+            int child = newNode(cell, distance, cost, best);
+            children[best * 4 + d] = child;
+            putNode(cell, child);
+            addToSets(child);
+            addToSets(best);
+            backUp(best);
+            return cell;
+        }
+    }
+
+    /**
+     * Picks which child to make next: one that was never made, or else the dropped one with the lowest cost
+     */
+    private int nextDirection(int node) {
+        if (fresh[node] != 0) return Integer.numberOfTrailingZeros(fresh[node]);
+        int bestDirection = -1;
+        for (int d = 0; d < 4; d++) {
+            if ((pending[node] & 1 << d) != 0
+                    && (bestDirection == -1 || forgotten[node * 4 + d] < forgotten[node * 4 + bestDirection])) {
+                bestDirection = d;
+            }
+        }
+        return bestDirection;
+    }
+
+    /**
+     * Drops the leaf with the highest cost to make room for a new node
+     * @param keep node that must not be dropped, since a child is about to be added to it
+     */
+    private void dropWorstLeaf(int keep) {
+        // take the nodes that cannot be dropped off the top, and put them back afterwards
+        int skippedCount = 0;
+        int[] skipped = new int[2];
+        int node;
+        while ((node = leaves.remove()) == keep || parents[node] == -1) {
+            skipped[skippedCount++] = node;
+        }
+        for (int i = 0; i < skippedCount; i++) {
+            addToSets(skipped[i]);
+        }
+        removeFromSets(node);
+        removeNode(cells[node], node);
+        int parent = parents[node];
+        removeFromSets(parent);
+        for (int d = 0; d < 4; d++) {
+            if (children[parent * 4 + d] == node) {
+                children[parent * 4 + d] = -1;
+                forgotten[parent * 4 + d] = costs[node];
+                // there is no path through a node with an infinite cost, so it never needs to be made again
+                if (costs[node] != INFINITY) pending[parent] |= (byte) (1 << d);
+            }
+        }
+        addToSets(parent);
+        free[freeCount++] = node;
+        nodeCount--;
+    }
+
+    /**
+     * @param cell index of a square
+     * @return the node with the shortest distance for the square, or -1 if the square is not in the tree
+     */
+    private int nodeAt(int cell) {
+        for (int i = slot(cell); tableCells[i] != -1; i = (i + 1) & tableMask) {
+            if (tableCells[i] == cell) return tableNodes[i];
+        }
+        return -1;
+    }
+
+    /**
+     * Makes a node the one for its square, in place of any node the square had before
+     */
+    private void putNode(int cell, int node) {
+        int i = slot(cell);
+        while (tableCells[i] != -1 && tableCells[i] != cell) i = (i + 1) & tableMask;
+        tableCells[i] = cell;
+        tableNodes[i] = node;
+    }
+
+    /**
+     * Removes a square from the table if its node is the one given
+     */
+    private void removeNode(int cell, int node) {
+        int i = slot(cell);
+        while (tableCells[i] != cell) {
+            if (tableCells[i] == -1) return;
+            i = (i + 1) & tableMask;
+        }
+        if (tableNodes[i] != node) return;
+        // move later entries back into the hole if the hole is between their slot and where they are, so every
+        // entry can still be found from its slot without stepping over an empty one
+        int hole = i;
+        for (int j = (i + 1) & tableMask; tableCells[j] != -1; j = (j + 1) & tableMask) {
+            int home = slot(tableCells[j]);
+            if (((j - home) & tableMask) >= ((j - hole) & tableMask)) {
+                tableCells[hole] = tableCells[j];
+                tableNodes[hole] = tableNodes[j];
+                hole = j;
+            }
+        }
+        tableCells[hole] = -1;
+    }
+
+    /**
+     * @return the slot a square's entry goes in if it is free
+     */
+    private int slot(int cell) {
+        int hash = cell * 0x9E3779B9;
+        return (hash ^ hash >>> 16) & tableMask;
+    }
+
+    /**
+     * Raises the cost of a node to the lowest cost of its children once every child has been made, and does the
+     * same for its ancestors
+     */
+    private void backUp(int node) {
+        while (node != -1 && fresh[node] == 0 && cells[node] != destIndex) {
+            int lowest = INFINITY;
+            for (int d = 0; d < 4; d++) {
+                int child = children[node * 4 + d];
+                if (child != -1) lowest = Math.min(lowest, costs[child]);
+                else if ((pending[node] & 1 << d) != 0) lowest = Math.min(lowest, forgotten[node * 4 + d]);
+            }
+            if (lowest <= costs[node]) return;
+            removeFromSets(node);
+            costs[node] = lowest;
+            addToSets(node);
+            node = parents[node];
+        }
+    }
+
+    /**
+     * Builds the chain of states from the root to a node
+     * @param node the last node
+     * @return the state of that node
+     */
+    private State chainTo(int node) {
+        int length = distances[node] + 1;
+        int[] path = new int[length];
+        for (int i = length - 1; node != -1; i--, node = parents[node]) {
+            path[i] = cells[node];
+        }
+        State state = null;
+        for (int cell : path) {
+            state = new State(new Point(cell / height, cell % height), state);
+        }
+        return state;
+    }
+
+    /**
+     * @return the most nodes the tree has held at once
+     */
+    public int getPeakNodes() {
+        return peakNodes;
+    }
+
+    /**
+     * Estimates the most memory the search has needed. Everything is made at full size up front: the node arrays, the
+     * two heaps, and the table of squares.
+     * @return the number of bytes
+     */
+    public long getPeakBytes() {
+        long perNode = 5L * Integer.BYTES + 8L * Integer.BYTES + 2 + 2L * IndexedHeap.bytesPerId();
+        return maxNodes * perNode + 2L * Integer.BYTES * tableCells.length;
+    }
+}
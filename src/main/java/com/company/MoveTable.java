@@ -0,0 +1,19 @@
+package com.company;
+
+/**
+ * Something that knows which way to step to get closer to a destination, without having to search for it.
+ * @see MoveTableWalk
+ */
+public interface MoveTable {
+
+    /**
+     * Gets the first step of a shortest path between two squares
+     * @param x1 x coordinate of the square to step from
+     * @param y1 y coordinate of the square to step from
+     * @param x2 x coordinate of the destination
+     * @param y2 y coordinate of the destination
+     * @return one of the {@link Direction} constants, or -1 if the destination cannot be reached or is already
+     * reached
+     */
+    int firstMove(int x1, int y1, int x2, int y2);
+}
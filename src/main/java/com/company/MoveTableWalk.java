@@ -0,0 +1,43 @@
+package com.company;
+
+import java.awt.*;
+
+/**
+ * Follows the moves stored in a {@link MoveTable} from the start to the destination. No search is done, so each
+ * step only looks at the square the walk is on, and the path is the one the table was built with.
+ * @see CompressedPathDatabase
+ */
+public class MoveTableWalk extends SearchAlgorithm {
+
+    private final MoveTable table;
+    private int x;
+    private int y;
+    private State last;
+
+    public MoveTableWalk(boolean[][] grid, MoveTable table, int x1, int y1, int x2, int y2) {
+        super(grid, x1, y1, x2, y2);
+        this.table = table;
+        x = x1;
+        y = y1;
+    }
+
+    @Override
+    protected int step() {
+        if (!beginStep()) return -1;
+        int curr = x * height + y;
+        last = new State(new Point(x, y), last);
+        if (isGoal(curr)) {
+            finish(last);
+            return curr;
+        }
+        int move = table.firstMove(x, y, dest.x, dest.y);
+        if (move == -1) {
+            // the square is still visited, even though there is nowhere to go from it
+            end(SearchStatus.UNREACHABLE);
+            return curr;
+        }
+        x += Direction.X[move];
+        y += Direction.Y[move];
+        return curr;
+    }
+}
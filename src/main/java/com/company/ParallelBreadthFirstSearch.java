@@ -0,0 +1,226 @@
+package com.company;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Breadth first search that finds the distance from one square to every other square, using many threads. The
+ * search goes one layer at a time: the squares in the current layer are split into chunks, and each chunk is
+ * searched on its own thread. A square is claimed for the next layer by setting its distance with a compare and set,
+ * so every square is only added once even if two threads reach it at the same time. Each chunk collects the squares
+ * it claimed in its own list, and the lists are joined to make the next layer.
+ * <p>
+ * Small layers are not worth splitting, so they are searched on the calling thread.
+ * @see BreadthFirstSearch
+ */
+public class ParallelBreadthFirstSearch {
+
+    /**
+     * Layers with fewer squares than this are searched on one thread
+     */
+    private static final int SERIAL_THRESHOLD = 1 << 12;
+
+    /**
+     * Smallest number of squares given to one thread
+     */
+    private static final int MIN_CHUNK = 1 << 10;
+
+    /**
+     * Allows compare and set on the elements of the distance array
+     */
+    private static final VarHandle DISTANCE = MethodHandles.arrayElementVarHandle(int[].class);
+
+    /**
+     * The grid to search
+     */
+    private final boolean[][] grid;
+
+    /**
+     * Height of the grid, used to turn an index into coordinates
+     */
+    private final int height;
+
+    /**
+     * The threads to search with
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * The squares each chunk claimed for the next layer. Kept between layers so they do not need to be allocated
+     * again.
+     */
+    private int[][] pieces = new int[0][];
+
+    /**
+     * Number of squares in each of the pieces
+     */
+    private int[] pieceSizes = new int[0];
+
+    /**
+     * Creates a search that uses the common fork join pool
+     * @param grid the grid to search, true if there is a wall. The edges of the grid must be walls.
+     */
+    public ParallelBreadthFirstSearch(boolean[][] grid) {
+        this(grid, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a search
+     * @param grid the grid to search, true if there is a wall. The edges of the grid must be walls.
+     * @param pool the threads to search with
+     */
+    public ParallelBreadthFirstSearch(boolean[][] grid, ForkJoinPool pool) {
+        this.grid = grid;
+        this.height = grid[0].length;
+        this.pool = pool;
+    }
+
+    /**
+     * Finds the distance from a square to every other square
+     * @param x x coordinate of the start
+     * @param y y coordinate of the start
+     * @return the distance to every square, stored at index {@code x * height + y}, or -1 if it cannot be reached
+     */
+    public int[] distances(int x, int y) {
+        int[] distances = new int[grid.length * height];
+        Arrays.fill(distances, -1);
+        if (grid[x][y]) return distances;
+        int[] frontier = new int[distances.length];
+        int[] next = new int[distances.length];
+        int size = 1;
+        frontier[0] = x * height + y;
+        distances[frontier[0]] = 0;
+        for (int level = 1; size > 0; level++) {
+            if (size < SERIAL_THRESHOLD || pool.getParallelism() == 1) {
+                size = expandSerial(frontier, size, next, distances, level);
+            } else {
+                size = expandParallel(frontier, size, next, distances, level);
+            }
+            int[] temp = frontier;
+            frontier = next;
+            next = temp;
+        }
+        return distances;
+    }
+
+    /**
+     * Finds the next layer on the calling thread
+     * @param frontier squares in the current layer
+     * @param size number of squares in the current layer
+     * @param next where to put the squares in the next layer
+     * @param distances distance to every square, -1 if not reached yet
+     * @param level distance of the squares in the next layer
+     * @return number of squares in the next layer
+     */
+    private int expandSerial(int[] frontier, int size, int[] next, int[] distances, int level) {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            int curr = frontier[i];
+            int x = curr / height;
+            int y = curr - x * height;
+            if (!grid[x-1][y] && distances[curr - height] == -1) {
+                distances[curr - height] = level;
+                next[count++] = curr - height;
+            }
+            if (!grid[x][y-1] && distances[curr - 1] == -1) {
+                distances[curr - 1] = level;
+                next[count++] = curr - 1;
+            }
+            if (!grid[x][y+1] && distances[curr + 1] == -1) {
+                distances[curr + 1] = level;
+                next[count++] = curr + 1;
+            }
+            if (!grid[x+1][y] && distances[curr + height] == -1) {
+                distances[curr + height] = level;
+                next[count++] = curr + height;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Finds the next layer by splitting the current layer between threads
+     * @param frontier squares in the current layer
+     * @param size number of squares in the current layer
+     * @param next where to put the squares in the next layer
+     * @param distances distance to every square, -1 if not reached yet
+     * @param level distance of the squares in the next layer
+     * @return number of squares in the next layer
+     */
+    private int expandParallel(int[] frontier, int size, int[] next, int[] distances, int level) {
+        int chunks = Math.max(1, Math.min(pool.getParallelism() * 4, size / MIN_CHUNK));
+        if (pieces.length < chunks) {
+            pieces = Arrays.copyOf(pieces, chunks);
+            pieceSizes = new int[chunks];
+        }
+        RecursiveAction[] tasks = new RecursiveAction[chunks];
+        for (int c = 0; c < chunks; c++) {
+            int chunk = c;
+            int from = (int) ((long) size * c / chunks);
+            int to = (int) ((long) size * (c + 1) / chunks);
+            tasks[c] = new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    expandChunk(frontier, from, to, distances, level, chunk);
+                }
+            };
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(tasks);
+            }
+        });
+        // join the pieces into the next layer
+        int count = 0;
+        for (int c = 0; c < chunks; c++) {
+            System.arraycopy(pieces[c], 0, next, count, pieceSizes[c]);
+            count += pieceSizes[c];
+        }
+        return count;
+    }
+
+    /**
+     * Searches one chunk of the current layer, claiming squares with compare and set
+     * @param frontier squares in the current layer
+     * @param from first index of the chunk
+     * @param to index after the last one in the chunk
+     * @param distances distance to every square, -1 if not reached yet
+     * @param level distance of the squares in the next layer
+     * @param chunk which piece to put the claimed squares in
+     */
+    private void expandChunk(int[] frontier, int from, int to, int[] distances, int level, int chunk) {
+        // each square has at most 3 neighbors that were not reached before it
+        int[] piece = pieces[chunk];
+        if (piece == null || piece.length < (to - from) * 3) {
+            piece = pieces[chunk] = new int[(to - from) * 3];
+        }
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            int curr = frontier[i];
+            int x = curr / height;
+            int y = curr - x * height;
+            if (!grid[x-1][y] && claim(distances, curr - height, level)) piece[count++] = curr - height;
+            if (!grid[x][y-1] && claim(distances, curr - 1, level)) piece[count++] = curr - 1;
+            if (!grid[x][y+1] && claim(distances, curr + 1, level)) piece[count++] = curr + 1;
+            if (!grid[x+1][y] && claim(distances, curr + height, level)) piece[count++] = curr + height;
+        }
+        pieceSizes[chunk] = count;
+    }
+
+    /**
+     * Sets the distance of a square if it was not reached yet
+     * @param distances distance to every square
+     * @param square index of the square
+     * @param level distance to set
+     * @return true if this thread was the one to reach the square
+     */
+    private static boolean claim(int[] distances, int square, int level) {
+        // plain read first, since most squares were already claimed and a compare and set is more expensive
+        return distances[square] == -1 && DISTANCE.compareAndSet(distances, square, -1, level);
+    }
+}
@@ -0,0 +1,596 @@
+package com.company;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Serves paths on one map over HTTP, so other programs can find paths without the GUI. The map is loaded once, and
+ * each request is handled on its own virtual thread when the JDK has them (Java 21 and later), or on a pool of
+ * threads otherwise.
+ * <p>
+ * Coordinates in requests and responses are map coordinates, starting from 0 at the top left, without the border
+ * of walls the searches add around the map. The endpoints are:
+ * <ul>
+ *     <li>{@code GET /ready}: 200 once the server can answer queries, 503 before that</li>
+ *     <li>{@code GET /path?x1=&y1=&x2=&y2=}: one path</li>
+ *     <li>{@code POST /batch}: many paths. The body is one query per line as {@code x1 y1 x2 y2}, or if the
+ *     content type is application/octet-stream, the number of queries followed by four ints for each, big
+ *     endian.</li>
+ *     <li>{@code GET /metrics}: latency histograms and the number of searches that ended each way</li>
+ * </ul>
+ * The path queries take these optional parameters: {@code algorithm} (see {@link AlgorithmType#getName()}, default
+ * astar), {@code format} (json or binary, default json), {@code timeoutMs} and {@code maxExpansions}. A batch also
+ * takes {@code batchTimeoutMs}, the most time all its searches can take together; queries not started by then are
+ * answered as CANCELLED. A batch can hold at most {@value #MAX_BATCH_QUERIES} queries, and larger ones get 413.
+ * <p>
+ * Everything the searches share is built by {@link #start(boolean)} before the server says it is ready, so no request
+ * waits for it. The path database takes time and memory for every pair of squares, so it is only built if asked for,
+ * and the pathdb algorithm is answered with 503 otherwise. Flow fields are built for each destination the first time
+ * it is asked for, and the most recently used ones are kept.
+ * <p>
+ * A binary path is one status byte (the ordinal of {@link SearchStatus}), followed by the path as written by
+ * {@link EncodedPath#writeTo(ByteBuffer)} if the status is SUCCEEDED. A binary batch is the number of results as an
+ * int, followed by each result in the same form.
+ */
+public class PathServer {
+
+    /**
+     * Most time a search can take if the request does not say
+     */
+    private static final long DEFAULT_TIMEOUT_MILLIS = 1000;
+
+    /**
+     * Most time all the searches of a batch can take together if the request does not say
+     */
+    private static final long DEFAULT_BATCH_TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * Most queries a batch can hold
+     */
+    static final int MAX_BATCH_QUERIES = 10_000;
+
+    /**
+     * Most bytes the body of a batch can have, which is enough for the most queries as text with room to spare
+     */
+    private static final int MAX_BATCH_BYTES = MAX_BATCH_QUERIES * 64;
+
+    /**
+     * Size of the transposition table for IDA*
+     */
+    private static final int IDA_STAR_TABLE_SIZE = 1 << 16;
+
+    /**
+     * Most nodes SMA* can keep
+     */
+    private static final int SMA_STAR_NODES = 1 << 16;
+
+    /**
+     * The starting inflation factor for anytime A*
+     */
+    private static final double ANYTIME_EPSILON = 3;
+
+    /**
+     * Most memory the flow fields kept for reuse can take. Each takes about nine bytes for every square of the map, so
+     * on large maps only a few are kept, but at least one always is.
+     */
+    private static final long FLOW_FIELD_CACHE_BYTES = 64L << 20;
+
+    /**
+     * A response to send back
+     */
+    private record Response(int code, String contentType, byte[] body) {}
+
+    /**
+     * Handles one endpoint
+     */
+    @FunctionalInterface
+    private interface Handler {
+        Response handle(HttpExchange exchange) throws IOException;
+    }
+
+    /**
+     * How one search ended
+     * @param path the path in map coordinates, or null if the status is not SUCCEEDED
+     */
+    private record Result(SearchStatus status, EncodedPath path, long expansions) {}
+
+    /**
+     * The map, with a border of walls. It is never changed, so any number of searches can read it at once.
+     */
+    private final boolean[][] grid;
+    private final int cells;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+    private final SearchContext.Pool contexts = new SearchContext.Pool();
+    private final Map<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+    private final LatencyHistogram searchLatency = new LatencyHistogram();
+    private final AtomicLongArray statusCounts = new AtomicLongArray(SearchStatus.values().length);
+    private volatile boolean ready;
+    private volatile CompressedPathDatabase pathDatabase;
+    private volatile CorridorGraph corridorGraph;
+    private volatile RectangleDecomposition rectangles;
+
+    /**
+     * Flow fields to recently asked for destinations, by index, least recently used first. The map never changes, so
+     * each field is only read once it is built, and can be shared by every search going to the same place.
+     */
+    private final Map<Integer, FlowField> flowFields = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, FlowField> eldest) {
+            return size() > 1 && size() * eldest.getValue().bytesPerCell() * cells > FLOW_FIELD_CACHE_BYTES;
+        }
+    };
+
+    /**
+     * Creates a server, which does not accept connections until {@link #start(boolean)} is called
+     * @param grid the map, true if there is a wall, with a border of walls around it
+     * @param address the address to listen on. Port 0 picks any free port.
+     * @throws IOException if the server cannot listen on the address
+     */
+    public PathServer(boolean[][] grid, InetSocketAddress address) throws IOException {
+        this.grid = grid;
+        cells = grid.length * grid[0].length;
+        server = HttpServer.create(address, 0);
+        ExecutorService virtual = newVirtualThreadExecutor();
+        virtualThreads = virtual != null;
+        executor = virtualThreads ? virtual : Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/ready", timed("ready", exchange -> ready
+                ? text(200, "ready") : text(503, "not ready")));
+        server.createContext("/path", timed("path", this::handlePath));
+        server.createContext("/batch", timed("batch", this::handleBatch));
+        server.createContext("/metrics", timed("metrics", exchange -> text(200, metrics())));
+    }
+
+    /**
+     * Makes an executor that starts a virtual thread for each task, if this version of Java has them. Reflection is
+     * used so the code still compiles and runs on versions without them.
+     * @return the executor, or null if there are no virtual threads
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Starts accepting connections, and builds the corridor graph and the rectangles of the map before saying the
+     * server is ready
+     * @param buildPathDatabase whether to also build the path database, which the pathdb algorithm needs
+     */
+    public void start(boolean buildPathDatabase) {
+        server.start();
+        corridorGraph = new CorridorGraph(grid);
+        rectangles = new RectangleDecomposition(grid);
+        if (buildPathDatabase) pathDatabase = CompressedPathDatabase.build(grid);
+        ready = true;
+    }
+
+    /**
+     * Stops the server
+     * @param delaySeconds most time to wait for requests that are being handled to finish
+     */
+    public void stop(int delaySeconds) {
+        ready = false;
+        server.stop(delaySeconds);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the address the server is listening on, with the real port if port 0 was asked for
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * @return whether requests are handled on virtual threads
+     */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    private HttpHandler timed(String name, Handler handler) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        latencies.put(name, histogram);
+        return exchange -> {
+            long start = System.nanoTime();
+            try {
+                Response response;
+                try {
+                    response = handler.handle(exchange);
+                } catch (IllegalArgumentException e) {
+                    response = text(400, e.getMessage());
+                } catch (RuntimeException e) {
+                    response = text(500, e.toString());
+                }
+                exchange.getResponseHeaders().set("Content-Type", response.contentType());
+                byte[] body = response.body();
+                exchange.sendResponseHeaders(response.code(), body.length == 0 ? -1 : body.length);
+                exchange.getResponseBody().write(body);
+            } finally {
+                exchange.close();
+                histogram.record(System.nanoTime() - start);
+            }
+        };
+    }
+
+    private Response handlePath(HttpExchange exchange) {
+        if (!exchange.getRequestMethod().equals("GET")) return text(405, "Use GET");
+        if (!ready) return text(503, "not ready");
+        Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+        AlgorithmType type = AlgorithmType.parse(params.getOrDefault("algorithm", "astar"));
+        if (type == AlgorithmType.PATH_DATABASE && pathDatabase == null) return noPathDatabase();
+        long timeout = parseLong(params, "timeoutMs", DEFAULT_TIMEOUT_MILLIS);
+        long maxExpansions = parseLong(params, "maxExpansions", 0);
+        boolean binary = isBinary(params);
+        SearchContext context = contexts.acquire(cells);
+        try {
+            Result result = solve(type, context, parseInt(params, "x1"), parseInt(params, "y1"),
+                    parseInt(params, "x2"), parseInt(params, "y2"), TimeUnit.MILLISECONDS.toNanos(timeout),
+                    maxExpansions);
+            if (binary) {
+                ByteBuffer buffer = ByteBuffer.allocate(binarySize(result));
+                writeBinary(buffer, result);
+                return new Response(200, "application/octet-stream", buffer.array());
+            }
+            StringBuilder json = new StringBuilder();
+            writeJson(json, result);
+            return new Response(200, "application/json", json.toString().getBytes(StandardCharsets.UTF_8));
+        } finally {
+            contexts.release(context);
+        }
+    }
+
+    private Response handleBatch(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("POST")) return text(405, "Use POST");
+        if (!ready) return text(503, "not ready");
+        Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+        AlgorithmType type = AlgorithmType.parse(params.getOrDefault("algorithm", "astar"));
+        if (type == AlgorithmType.PATH_DATABASE && pathDatabase == null) return noPathDatabase();
+        long timeout = TimeUnit.MILLISECONDS.toNanos(parseLong(params, "timeoutMs", DEFAULT_TIMEOUT_MILLIS));
+        long batchTimeout = parseLong(params, "batchTimeoutMs", DEFAULT_BATCH_TIMEOUT_MILLIS);
+        long maxExpansions = parseLong(params, "maxExpansions", 0);
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            // read one byte more than allowed, to tell whether there was more
+            body = in.readNBytes(MAX_BATCH_BYTES + 1);
+        }
+        if (body.length > MAX_BATCH_BYTES) return tooManyQueries();
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        boolean binaryBody = contentType != null && contentType.startsWith("application/octet-stream");
+        // a binary body says how many queries it holds, which is checked before anything is made for them
+        if (binaryBody && body.length >= Integer.BYTES && ByteBuffer.wrap(body).getInt() > MAX_BATCH_QUERIES) {
+            return tooManyQueries();
+        }
+        int[] queries = binaryBody ? readBinaryQueries(body) : readTextQueries(body);
+        if (queries.length / 4 > MAX_BATCH_QUERIES) return tooManyQueries();
+        List<Result> results = new ArrayList<>(queries.length / 4);
+        long batchDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchTimeout);
+        // one context is enough, since the queries are run one after another
+        SearchContext context = contexts.acquire(cells);
+        try {
+            for (int i = 0; i < queries.length; i += 4) {
+                long remaining = batchDeadline - System.nanoTime();
+                if (batchTimeout > 0 && remaining <= 0) {
+                    results.add(new Result(SearchStatus.CANCELLED, null, 0));
+                    statusCounts.incrementAndGet(SearchStatus.CANCELLED.ordinal());
+                    continue;
+                }
+                // each search stops at its own timeout or when the batch runs out of time, whichever is first
+                long searchTimeout = batchTimeout <= 0 ? timeout
+                        : timeout <= 0 ? remaining : Math.min(timeout, remaining);
+                results.add(solve(type, context, queries[i], queries[i + 1], queries[i + 2], queries[i + 3],
+                        searchTimeout, maxExpansions));
+            }
+        } finally {
+            contexts.release(context);
+        }
+        if (isBinary(params)) {
+            int size = Integer.BYTES;
+            for (Result result : results) size += binarySize(result);
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            buffer.putInt(results.size());
+            for (Result result : results) writeBinary(buffer, result);
+            return new Response(200, "application/octet-stream", buffer.array());
+        }
+        StringBuilder json = new StringBuilder("{\"results\":[");
+        for (int i = 0; i < results.size(); i++) {
+            if (i > 0) json.append(',');
+            writeJson(json, results.get(i));
+        }
+        json.append("]}");
+        return new Response(200, "application/json", json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Response tooManyQueries() {
+        return text(413, "A batch can hold at most " + MAX_BATCH_QUERIES + " queries");
+    }
+
+    private static Response noPathDatabase() {
+        return text(503, "No path database; start the server with --pathdb to use it");
+    }
+
+    /**
+     * Finds one path. The time to build a flow field the first time its destination is asked for counts toward the
+     * timeout, since the search starts after it and stops as soon as it sees the deadline has passed.
+     * @param context scratch space for the searches that use one
+     * @param timeoutNanos most time the search can take, or 0 for no limit
+     * @param maxExpansions most squares the search can expand, or 0 for no limit
+     * @return how the search ended, with the path in map coordinates
+     * @throws IllegalArgumentException if a coordinate is outside the map
+     */
+    private Result solve(AlgorithmType type, SearchContext context, int x1, int y1, int x2, int y2,
+                         long timeoutNanos, long maxExpansions) {
+        checkInMap(x1, y1);
+        checkInMap(x2, y2);
+        // move past the border
+        x1++;
+        y1++;
+        x2++;
+        y2++;
+        long start = System.nanoTime();
+        Result result;
+        if (grid[x1][y1] || grid[x2][y2]) {
+            result = new Result(SearchStatus.UNREACHABLE, null, 0);
+        } else {
+            SearchAlgorithm search = create(type, context, x1, y1, x2, y2);
+            if (timeoutNanos > 0) search.setDeadline(start + timeoutNanos);
+            search.setMaxExpansions(maxExpansions);
+            SearchStatus status = search.run();
+            EncodedPath path = status == SearchStatus.SUCCEEDED ? search.encodedPath().translate(-1, -1) : null;
+            result = new Result(status, path, search.getExpansions());
+        }
+        searchLatency.record(System.nanoTime() - start);
+        statusCounts.incrementAndGet(result.status().ordinal());
+        return result;
+    }
+
+    private SearchAlgorithm create(AlgorithmType type, SearchContext context, int x1, int y1, int x2, int y2) {
+        return switch (type) {
+            case DFS -> new DepthFirstSearch(grid, x1, y1, x2, y2, context);
+            case BFS -> new BreadthFirstSearch(grid, x1, y1, x2, y2, context);
+            case A_STAR -> new AStar(grid, x1, y1, x2, y2, Heuristic.MANHATTAN, context);
+            case GREEDY -> new Greedy(grid, x1, y1, x2, y2, context);
+            case ANYTIME_A_STAR -> new AnytimeAStar(grid, x1, y1, x2, y2, ANYTIME_EPSILON, context);
+            case IDA_STAR -> new IterativeDeepeningAStar(grid, x1, y1, x2, y2, IDA_STAR_TABLE_SIZE,
+                    Heuristic.MANHATTAN);
+            case SMA_STAR -> new MemoryBoundedAStar(grid, x1, y1, x2, y2, SMA_STAR_NODES);
+            case PATH_DATABASE -> new MoveTableWalk(grid, pathDatabase, x1, y1, x2, y2);
+            case FLOW_FIELD -> new MoveTableWalk(grid, getFlowField(x2, y2), x1, y1, x2, y2);
+            case CORRIDOR -> new CorridorSearch(grid, corridorGraph, x1, y1, x2, y2, context);
+            case RECTANGLES -> new AStar(grid, x1, y1, x2, y2, Heuristic.MANHATTAN, rectangles, context);
+        };
+    }
+
+    /**
+     * Gets the flow field to a destination, building it if it is not kept already. It is built without holding the
+     * lock, so searches to other destinations do not wait for it; two searches to a new destination at once may both
+     * build it, and only the first is kept.
+     * @param x x coordinate of the destination, including the border
+     * @param y y coordinate of the destination, including the border
+     * @return the flow field
+     */
+    private FlowField getFlowField(int x, int y) {
+        int dest = x * grid[0].length + y;
+        synchronized (flowFields) {
+            FlowField field = flowFields.get(dest);
+            if (field != null) return field;
+        }
+        FlowField field = new FlowField(grid, x, y);
+        synchronized (flowFields) {
+            FlowField kept = flowFields.putIfAbsent(dest, field);
+            return kept == null ? field : kept;
+        }
+    }
+
+    private void checkInMap(int x, int y) {
+        if (x < 0 || y < 0 || x >= grid.length - 2 || y >= grid[0].length - 2) {
+            throw new IllegalArgumentException("Outside the map: " + x + ", " + y);
+        }
+    }
+
+    private static int binarySize(Result result) {
+        return 1 + (result.path() == null ? 0 : result.path().sizeInBytes());
+    }
+
+    private static void writeBinary(ByteBuffer buffer, Result result) {
+        buffer.put((byte) result.status().ordinal());
+        if (result.path() != null) result.path().writeTo(buffer);
+    }
+
+    private static void writeJson(StringBuilder json, Result result) {
+        json.append("{\"status\":\"").append(result.status()).append("\",\"expansions\":").append(result.expansions());
+        if (result.path() != null) {
+            json.append(",\"length\":").append(result.path().length()).append(",\"path\":[");
+            result.path().forEach((x, y) -> json.append('[').append(x).append(',').append(y).append("],"));
+            // remove the last comma
+            json.setLength(json.length() - 1);
+            json.append(']');
+        }
+        json.append('}');
+    }
+
+    private static int[] readTextQueries(byte[] body) {
+        String[] lines = new String(body, StandardCharsets.UTF_8).split("\n");
+        int[] queries = new int[lines.length * 4];
+        int count = 0;
+        for (String line : lines) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty()) continue;
+            String[] parts = trimmed.split("\\s+");
+            if (parts.length != 4) throw new IllegalArgumentException("Expected x1 y1 x2 y2, got: " + trimmed);
+            for (String part : parts) {
+                queries[count++] = parseNumber(part);
+            }
+        }
+        return Arrays.copyOf(queries, count);
+    }
+
+    private static int[] readBinaryQueries(byte[] body) {
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        if (buffer.remaining() < Integer.BYTES) throw new IllegalArgumentException("Missing number of queries");
+        int count = buffer.getInt();
+        if (count < 0 || (long) count * 4 * Integer.BYTES != buffer.remaining()) {
+            throw new IllegalArgumentException("Body does not hold " + count + " queries");
+        }
+        int[] queries = new int[count * 4];
+        buffer.asIntBuffer().get(queries);
+        return queries;
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null || query.isEmpty()) return params;
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            String key = equals == -1 ? pair : pair.substring(0, equals);
+            String value = equals == -1 ? "" : pair.substring(equals + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static boolean isBinary(Map<String, String> params) {
+        String format = params.getOrDefault("format", "json");
+        if (!format.equals("json") && !format.equals("binary")) {
+            throw new IllegalArgumentException("Unknown format: " + format);
+        }
+        return format.equals("binary");
+    }
+
+    private static int parseInt(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null) throw new IllegalArgumentException("Missing " + name);
+        return parseNumber(value);
+    }
+
+    private static int parseNumber(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + value);
+        }
+    }
+
+    private static long parseLong(Map<String, String> params, String name, long defaultValue) {
+        String value = params.get(name);
+        if (value == null) return defaultValue;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + value);
+        }
+    }
+
+    private static Response text(int code, String message) {
+        return new Response(code, "text/plain; charset=utf-8", message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the latency of each endpoint and of the searches alone, how many searches ended each way, and how many
+     * flow fields are kept
+     */
+    private String metrics() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            text.append("request ").append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+        }
+        text.append("search ").append(searchLatency).append('\n');
+        SearchStatus[] statuses = SearchStatus.values();
+        for (int i = 0; i < statuses.length; i++) {
+            text.append("status ").append(statuses[i]).append(' ').append(statusCounts.get(i)).append('\n');
+        }
+        synchronized (flowFields) {
+            text.append("flowfields ").append(flowFields.size()).append(" kept\n");
+        }
+        text.append("threads ").append(virtualThreads ? "virtual" : "platform").append('\n');
+        return text.toString();
+    }
+
+    /**
+     * Reads a map from a text file. Each line is a row, and '#', '@', 'O', 'T', and 'W' are walls while anything
+     * else is open. Files in the Moving AI format, which start with a header ending in a line that says "map", are
+     * also read. Rows shorter than the longest row are filled with open squares.
+     * @param file the file
+     * @return the map, true if there is a wall, with a border of walls added around it
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean[][] loadMap(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file);
+        if (!lines.isEmpty() && lines.get(0).startsWith("type")) {
+            int mapLine = lines.indexOf("map");
+            if (mapLine == -1) throw new IOException("Map header has no \"map\" line");
+            lines = lines.subList(mapLine + 1, lines.size());
+        }
+        int width = 0;
+        for (String line : lines) width = Math.max(width, line.length());
+        int height = lines.size();
+        if (width == 0) throw new IOException("Map is empty");
+        boolean[][] grid = new boolean[width + 2][height + 2];
+        for (int x = 0; x < width + 2; x++) {
+            grid[x][0] = true;
+            grid[x][height + 1] = true;
+        }
+        for (int y = 0; y < height; y++) {
+            grid[0][y + 1] = true;
+            grid[width + 1][y + 1] = true;
+            String line = lines.get(y);
+            for (int x = 0; x < line.length(); x++) {
+                grid[x + 1][y + 1] = "#@OTW".indexOf(line.charAt(x)) != -1;
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Starts a server
+     * @param args the map file, then optionally the port (8080 if not given) and "--pathdb" to build the path
+     *             database, so the pathdb algorithm can be used
+     * @throws IOException if the map cannot be read or the port cannot be listened on
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: PathServer <map file> [port] [--pathdb]");
+            System.exit(2);
+        }
+        boolean[][] grid = loadMap(Path.of(args[0]));
+        int port = args.length > 1 && !args[1].startsWith("--") ? Integer.parseInt(args[1]) : 8080;
+        boolean buildPathDatabase = List.of(args).contains("--pathdb");
+        PathServer server = new PathServer(grid, new InetSocketAddress(port));
+        server.start(buildPathDatabase);
+        System.out.printf("Serving %dx%d map on %s using %s threads%n", grid.length - 2, grid[0].length - 2,
+                server.getAddress(), server.usesVirtualThreads() ? "virtual" : "platform");
+    }
+}
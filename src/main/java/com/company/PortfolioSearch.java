@@ -0,0 +1,238 @@
+package com.company;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Races several search algorithms on the same grid, each on its own thread, and keeps whichever answers first. Which
+ * algorithm is fastest depends on the map: A* is best on open maps, depth first search can get lucky in mazes, and
+ * greedy search is fast when the way is clear but can wander far when it is not. Racing them means the answer comes
+ * about as fast as the best of them would have been, at the cost of the work the others do until they are stopped.
+ * <p>
+ * All the searches share one {@link CancellationToken}, which is cancelled as soon as there is an answer, so the
+ * others stop within a few steps. There are two policies for what counts as an answer:
+ * <ul>
+ *     <li>{@link Policy#FIRST_PATH}: the first path found by any algorithm, even if it is not the shortest</li>
+ *     <li>{@link Policy#FIRST_OPTIMAL}: the first path known to be the shortest. That is a path from an algorithm that
+ *     always finds the shortest path, or from any algorithm if the path is no longer than the manhattan distance,
+ *     since nothing can be shorter than that.</li>
+ * </ul>
+ * Any algorithm finding that the destination cannot be reached is an answer under both policies, since every
+ * algorithm here searches everything it can reach before giving up.
+ * <p>
+ * The winner of each race is counted for each map, by its {@link TraceWriter#mapHash}, so later searches on the same
+ * map start the algorithms that won most often first, and {@link #getFavorite} tells which algorithm to use alone.
+ */
+public class PortfolioSearch {
+
+    /**
+     * What counts as an answer
+     */
+    public enum Policy {
+        /**
+         * The first path found
+         */
+        FIRST_PATH,
+        /**
+         * The first path known to be the shortest
+         */
+        FIRST_OPTIMAL
+    }
+
+    /**
+     * The answer of a race
+     * @param winner the algorithm that answered, or null if none did
+     * @param status how the winning search ended, or CANCELLED if none answered
+     * @param path index of each square of the path, or an empty array if there is none
+     * @param optimal whether the path is known to be the shortest
+     * @param nanos time from starting the race to the answer
+     */
+    public record Result(AlgorithmType winner, SearchStatus status, int[] path, boolean optimal, long nanos) {}
+
+    /**
+     * How one of the searches ended
+     */
+    private record Attempt(int index, SearchStatus status, int[] path) {}
+
+    /**
+     * The algorithms that can be raced, which need nothing but the grid to search
+     */
+    private static final EnumSet<AlgorithmType> SUPPORTED =
+            EnumSet.of(AlgorithmType.DFS, AlgorithmType.BFS, AlgorithmType.A_STAR, AlgorithmType.GREEDY);
+
+    private final AlgorithmType[] algorithms;
+    private final ExecutorService executor;
+    private final SearchContext.Pool contexts = new SearchContext.Pool();
+
+    /**
+     * Number of races each algorithm won on each map, by map hash, in the same order as {@link #algorithms}
+     */
+    private final Map<Long, AtomicIntegerArray> wins = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a portfolio with one thread for each algorithm
+     * @param algorithms the algorithms to race: any of DFS, BFS, A_STAR, and GREEDY, at least one
+     * @throws IllegalArgumentException if there are no algorithms, or one of them needs more than the grid to search
+     */
+    public PortfolioSearch(AlgorithmType... algorithms) {
+        this(Executors.newFixedThreadPool(Math.max(1, algorithms.length), r -> {
+            Thread thread = new Thread(r, "portfolio search");
+            thread.setDaemon(true);
+            return thread;
+        }), algorithms);
+    }
+
+    /**
+     * Creates a portfolio that searches on the given threads. With fewer threads than algorithms, the algorithms that
+     * won most often on the map are started first.
+     * @param executor the threads to search with
+     * @param algorithms the algorithms to race: any of DFS, BFS, A_STAR, and GREEDY, at least one
+     * @throws IllegalArgumentException if there are no algorithms, or one of them needs more than the grid to search
+     */
+    public PortfolioSearch(ExecutorService executor, AlgorithmType... algorithms) {
+        if (algorithms.length == 0) throw new IllegalArgumentException("Need at least one algorithm");
+        for (AlgorithmType algorithm : algorithms) {
+            if (!SUPPORTED.contains(algorithm)) {
+                throw new IllegalArgumentException("Cannot race " + algorithm.getName());
+            }
+        }
+        this.algorithms = algorithms.clone();
+        this.executor = executor;
+    }
+
+    /**
+     * Races the algorithms. The searches that lose are cancelled, and may still be running for a few steps after
+     * this returns.
+     * @param grid the grid to search, which must not change until every search has stopped, such as a snapshot
+     * @param x1 x coordinate of the start
+     * @param y1 y coordinate of the start
+     * @param x2 x coordinate of the destination
+     * @param y2 y coordinate of the destination
+     * @param policy what counts as an answer
+     * @return the answer. With {@link Policy#FIRST_OPTIMAL}, if none of the algorithms can prove its path is the
+     * shortest, this is the shortest path found, with optimal set to false and no winner counted.
+     * @throws InterruptedException if the thread is interrupted while waiting, which also cancels the searches
+     */
+    public Result search(boolean[][] grid, int x1, int y1, int x2, int y2, Policy policy)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        long mapHash = TraceWriter.mapHash(grid);
+        int cells = grid.length * grid[0].length;
+        int lowerBound = Math.abs(x2 - x1) + Math.abs(y2 - y1);
+        CancellationToken token = new CancellationToken();
+        ExecutorCompletionService<Attempt> done = new ExecutorCompletionService<>(executor);
+        for (int i : order(mapHash)) {
+            done.submit(() -> {
+                SearchContext context = contexts.acquire(cells);
+                try {
+                    SearchAlgorithm search = create(algorithms[i], grid, x1, y1, x2, y2, context);
+                    search.setCancellationToken(token);
+                    SearchStatus status = search.run();
+                    return new Attempt(i, status, search.path());
+                } finally {
+                    contexts.release(context);
+                }
+            });
+        }
+        Attempt best = null;
+        try {
+            for (int remaining = algorithms.length; remaining > 0; remaining--) {
+                Attempt attempt = done.take().get();
+                boolean found = attempt.status() == SearchStatus.SUCCEEDED;
+                if (found && (best == null || attempt.path().length < best.path().length)) best = attempt;
+                boolean optimal = isOptimal(algorithms[attempt.index()]) || attempt.path().length - 1 == lowerBound;
+                if (attempt.status() == SearchStatus.UNREACHABLE
+                        || found && (policy == Policy.FIRST_PATH || optimal)) {
+                    token.cancel();
+                    wins.computeIfAbsent(mapHash, h -> new AtomicIntegerArray(algorithms.length))
+                            .incrementAndGet(attempt.index());
+                    return new Result(algorithms[attempt.index()], attempt.status(), attempt.path(),
+                            !found || optimal, System.nanoTime() - start);
+                }
+            }
+        } catch (ExecutionException e) {
+            token.cancel();
+            throw new IllegalStateException("A search in the portfolio failed", e.getCause());
+        } catch (InterruptedException e) {
+            token.cancel();
+            throw e;
+        }
+        if (best == null) return new Result(null, SearchStatus.CANCELLED, new int[0], false, System.nanoTime() - start);
+        return new Result(null, best.status(), best.path(), false, System.nanoTime() - start);
+    }
+
+    /**
+     * Creates one of the searches
+     */
+    private static SearchAlgorithm create(AlgorithmType algorithm, boolean[][] grid, int x1, int y1, int x2, int y2,
+                                          SearchContext context) {
+        return switch (algorithm) {
+            case DFS -> new DepthFirstSearch(grid, x1, y1, x2, y2, context);
+            case BFS -> new BreadthFirstSearch(grid, x1, y1, x2, y2, context);
+            case A_STAR -> new AStar(grid, x1, y1, x2, y2, Heuristic.MANHATTAN, context);
+            default -> new Greedy(grid, x1, y1, x2, y2, context);
+        };
+    }
+
+    /**
+     * @return whether the algorithm always finds the shortest path
+     */
+    private static boolean isOptimal(AlgorithmType algorithm) {
+        return algorithm == AlgorithmType.BFS || algorithm == AlgorithmType.A_STAR;
+    }
+
+    /**
+     * Orders the algorithms by how many races they won on a map, most first. Algorithms with the same number of wins
+     * keep the order they were given in.
+     * @param mapHash hash of the map
+     * @return index of each algorithm, in the order to start them
+     */
+    private Integer[] order(long mapHash) {
+        Integer[] order = new Integer[algorithms.length];
+        Arrays.setAll(order, i -> i);
+        AtomicIntegerArray counts = wins.get(mapHash);
+        if (counts != null) Arrays.sort(order, (a, b) -> Integer.compare(counts.get(b), counts.get(a)));
+        return order;
+    }
+
+    /**
+     * Gets the number of races each algorithm won on a map
+     * @param mapHash the {@link TraceWriter#mapHash} of the map
+     * @return the wins of each algorithm, with no entry for algorithms that never won
+     */
+    public Map<AlgorithmType, Integer> getWins(long mapHash) {
+        Map<AlgorithmType, Integer> result = new EnumMap<>(AlgorithmType.class);
+        AtomicIntegerArray counts = wins.get(mapHash);
+        if (counts == null) return result;
+        for (int i = 0; i < algorithms.length; i++) {
+            if (counts.get(i) > 0) result.merge(algorithms[i], counts.get(i), Integer::sum);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the algorithm that won most often on a map, which is the one to use if there is only one thread to spare
+     * @param mapHash the {@link TraceWriter#mapHash} of the map
+     * @return the algorithm, or null if no race on the map was won yet
+     */
+    public AlgorithmType getFavorite(long mapHash) {
+        if (!wins.containsKey(mapHash)) return null;
+        return algorithms[order(mapHash)[0]];
+    }
+
+    /**
+     * Stops the threads once the searches that are running have stopped. The threads made by the constructor do not
+     * keep the program from exiting, so this is only needed to free them sooner.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,246 @@
+package com.company;
+
+import java.util.Arrays;
+
+/**
+ * Splits the open squares of a grid into empty rectangles, so a search can skip over the middle of each rectangle
+ * instead of sweeping through it one square at a time (rectangular symmetry reduction). Inside an empty rectangle,
+ * every shortest path between two squares on its edge is as long as the manhattan distance between them, and one of
+ * them always goes along the edge and then straight across. So a search only needs to expand the squares on the edges
+ * of the rectangles, as long as each of them can jump straight across to the other side.
+ * <p>
+ * The edges each square has, given to {@link AStar} through {@link #successors}, are:
+ * <ul>
+ *     <li>one step to each open neighbor in another rectangle, or on the edge of its own rectangle</li>
+ *     <li>a jump straight across the rectangle, instead of a step into the middle of it</li>
+ *     <li>if the destination is in the middle of the same rectangle, a jump straight to it from any square in the
+ *     same row or column</li>
+ * </ul>
+ * The start can be in the middle of a rectangle too, and then it jumps straight to each edge. Every edge is a straight
+ * line, and costs the number of steps along it, so paths stay the shortest, and the squares skipped over are filled
+ * back in when the path is built.
+ * <p>
+ * The rectangles are found greedily: going through the squares column by column, each open square that is not in a
+ * rectangle yet starts a new one, which is grown down as far as it can go and then right as far as it can go. Each
+ * square is looked at a constant number of times, so this takes time in proportion to the size of the grid. The
+ * rectangles are not changed when the walls change, so they should be built again after every edit.
+ * <p>
+ * This only pays off on open maps. Every square a search expands costs more than a plain step, since it has to look
+ * up its rectangle and the jumps across it, so when the walls are scattered and most rectangles are a square or two
+ * wide, the search expands about as many squares as before, each of them slower. {@link AStar} ignores rectangles
+ * that skip less than {@link #MIN_COMPRESSION} of the open squares, and searches square by square instead.
+ */
+public class RectangleDecomposition {
+
+    /**
+     * Fraction of the open squares that have to be skipped for the rectangles to be worth searching with
+     */
+    public static final double MIN_COMPRESSION = 0.5;
+
+    /**
+     * Height of the grid, including the border, used to turn coordinates into an index
+     */
+    private final int height;
+
+    /**
+     * Rectangle each square is in, or -1 for walls
+     */
+    private final int[] ids;
+
+    /**
+     * The smallest and largest x and y of each rectangle, at {@code 4 * id} to {@code 4 * id + 3}
+     */
+    private int[] bounds = new int[64];
+
+    private int rectangleCount;
+    private int openCount;
+
+    /**
+     * Number of open squares in the middle of a rectangle, which a search never has to expand
+     */
+    private long interiorCount;
+
+    /**
+     * Splits a grid into rectangles
+     * @param grid the grid, true if there is a wall. The edges of the grid must be walls.
+     */
+    public RectangleDecomposition(boolean[][] grid) {
+        height = grid[0].length;
+        ids = new int[grid.length * height];
+        Arrays.fill(ids, -1);
+        for (int x = 1; x < grid.length - 1; x++) {
+            for (int y = 1; y < height - 1; y++) {
+                if (!grid[x][y] && ids[x * height + y] == -1) grow(grid, x, y);
+            }
+        }
+    }
+
+    /**
+     * Makes a new rectangle with its top left corner at a square, as tall as it can be and then as wide as it can be
+     * @param grid the grid
+     * @param left x coordinate of the square
+     * @param top y coordinate of the square
+     */
+    private void grow(boolean[][] grid, int left, int top) {
+        int bottom = top;
+        while (isFree(grid, left, bottom + 1)) bottom++;
+        int right = left;
+        while (isFree(grid, right + 1, top, bottom)) right++;
+        int id = rectangleCount++;
+        if (4 * rectangleCount > bounds.length) bounds = Arrays.copyOf(bounds, bounds.length * 2);
+        bounds[4 * id] = left;
+        bounds[4 * id + 1] = top;
+        bounds[4 * id + 2] = right;
+        bounds[4 * id + 3] = bottom;
+        for (int x = left; x <= right; x++) {
+            Arrays.fill(ids, x * height + top, x * height + bottom + 1, id);
+        }
+        openCount += (right - left + 1) * (bottom - top + 1);
+        if (right - left >= 2 && bottom - top >= 2) interiorCount += (long) (right - left - 1) * (bottom - top - 1);
+    }
+
+    /**
+     * @return whether a square is open and not in a rectangle yet
+     */
+    private boolean isFree(boolean[][] grid, int x, int y) {
+        return !grid[x][y] && ids[x * height + y] == -1;
+    }
+
+    /**
+     * @return whether every square of part of a column is open and not in a rectangle yet
+     */
+    private boolean isFree(boolean[][] grid, int x, int top, int bottom) {
+        for (int y = top; y <= bottom; y++) {
+            if (!isFree(grid, x, y)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a square is in the middle of its rectangle, not on the edge
+     * @param cell index of an open square
+     * @return true if the square is in the middle
+     */
+    boolean isInterior(int cell) {
+        int b = 4 * ids[cell];
+        int x = cell / height;
+        int y = cell - x * height;
+        return x > bounds[b] && x < bounds[b + 2] && y > bounds[b + 1] && y < bounds[b + 3];
+    }
+
+    /**
+     * Gets the squares a search can go to next from a square, and how far each of them is. There are never more
+     * than five.
+     * @param cell index of the square to go from
+     * @param goal index of the destination
+     * @param cells where to write the index of each square
+     * @param costs where to write the number of steps to each square
+     * @return the number of squares written
+     */
+    int successors(int cell, int goal, int[] cells, int[] costs) {
+        int id = ids[cell];
+        int b = 4 * id;
+        int left = bounds[b];
+        int top = bounds[b + 1];
+        int right = bounds[b + 2];
+        int bottom = bounds[b + 3];
+        int x = cell / height;
+        int y = cell - x * height;
+        int count = 0;
+        if (ids[goal] == id && goal != cell && isInterior(goal)) {
+            int goalX = goal / height;
+            int goalY = goal - goalX * height;
+            if (goalX == x || goalY == y) {
+                cells[count] = goal;
+                costs[count++] = Math.abs(goalX - x) + Math.abs(goalY - y);
+            } else if (x > left && x < right && y > top && y < bottom) {
+                // the start is in the middle too, so go straight to the row of the destination first
+                cells[count] = goalX * height + y;
+                costs[count++] = Math.abs(goalX - x);
+            }
+        }
+        // going left, up, down, then right, like Direction
+        count = step(cell - height, id, x > left + 1 && y > top && y < bottom, left * height + y, x - left, cells,
+                costs, count);
+        count = step(cell - 1, id, y > top + 1 && x > left && x < right, x * height + top, y - top, cells, costs,
+                count);
+        count = step(cell + 1, id, y < bottom - 1 && x > left && x < right, x * height + bottom, bottom - y, cells,
+                costs, count);
+        return step(cell + height, id, x < right - 1 && y > top && y < bottom, right * height + y, right - x, cells,
+                costs, count);
+    }
+
+    /**
+     * Adds the successor in one direction: the neighbor, or the square on the far edge if the neighbor is in the
+     * middle of the same rectangle
+     * @param neighbor index of the neighbor
+     * @param id rectangle of the square being expanded
+     * @param intoMiddle whether the neighbor is in the middle of that rectangle
+     * @param edge index of the square on the far edge in this direction
+     * @param distance steps to the far edge
+     * @return the new number of successors
+     */
+    private int step(int neighbor, int id, boolean intoMiddle, int edge, int distance, int[] cells, int[] costs,
+                     int count) {
+        if (ids[neighbor] == -1) return count;
+        if (ids[neighbor] == id && intoMiddle) {
+            cells[count] = edge;
+            costs[count] = distance;
+        } else {
+            cells[count] = neighbor;
+            costs[count] = 1;
+        }
+        return count + 1;
+    }
+
+    /**
+     * Gets the rectangle a square is in
+     * @param x x coordinate of the square
+     * @param y y coordinate of the square
+     * @return the id of the rectangle, or -1 if the square is a wall
+     */
+    public int getRectangle(int x, int y) {
+        return ids[x * height + y];
+    }
+
+    /**
+     * @return the number of rectangles
+     */
+    public int getRectangleCount() {
+        return rectangleCount;
+    }
+
+    /**
+     * @return the number of open squares
+     */
+    public int getOpenCount() {
+        return openCount;
+    }
+
+    /**
+     * @return the number of open squares in the middle of a rectangle, which a search never expands
+     */
+    public long getInteriorCount() {
+        return interiorCount;
+    }
+
+    /**
+     * @return the fraction of open squares that a search never expands, between 0 and 1
+     */
+    public double getCompression() {
+        return openCount == 0 ? 0 : (double) interiorCount / openCount;
+    }
+
+    /**
+     * @return true if the rectangles skip enough squares to make a search faster, see {@link #MIN_COMPRESSION}
+     */
+    public boolean isWorthUsing() {
+        return getCompression() >= MIN_COMPRESSION;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("rectangle decomposition: %d open squares, %d rectangles, %d skipped (%.1f%%)",
+                openCount, rectangleCount, interiorCount, getCompression() * 100);
+    }
+}
@@ -0,0 +1,298 @@
+package com.company;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+import javax.swing.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long {@link GridPanel} takes to draw and how far its timers fall behind, so a slow frame shows up as a
+ * number instead of a laggy window. It keeps:
+ * <ul>
+ *     <li>how long each paint and each redraw of the whole grid takes</li>
+ *     <li>how long each tick of the search and retrace timers takes, and how late it fired compared to the timer's
+ *     delay</li>
+ *     <li>how many repaints were asked for and how many frames were painted. Swing merges repaints that are asked
+ *     for before the last one was painted, so the difference is how many were coalesced.</li>
+ *     <li>how many pixels each frame painted, from the clip of the frame</li>
+ *     <li>how long the event dispatch thread takes to run a task posted to it, which is measured by a watchdog thread
+ *     that posts one every {@link #HEARTBEAT_MILLIS}. Taking longer than {@link #STALL_MILLIS} counts as a stall.</li>
+ * </ul>
+ * Every measurement is also a JDK Flight Recorder event, under "Search Demo" in the event browser, which costs almost
+ * nothing when no recording is running. Everything but the watchdog is only called on the event dispatch thread.
+ */
+public class RenderStats {
+
+    /**
+     * Timer numbers for {@link #beginTick} and {@link #endTick}
+     */
+    static final int SEARCH_TIMER = 0;
+    static final int RETRACE_TIMER = 1;
+    private static final String[] TIMER_NAMES = {"search", "retrace"};
+
+    /**
+     * How often the watchdog checks on the event dispatch thread
+     */
+    static final long HEARTBEAT_MILLIS = 50;
+
+    /**
+     * How long the event dispatch thread can take to run a task before it counts as stalled
+     */
+    static final long STALL_MILLIS = 100;
+
+    /**
+     * Ticks that come more than this long after the last one are taken to be the first tick after the timer was
+     * started again, so they do not count as late
+     */
+    private static final long RESTART_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final LatencyHistogram frameTimes = new LatencyHistogram();
+    private final LatencyHistogram drawTimes = new LatencyHistogram();
+    private final LatencyHistogram[] tickTimes = {new LatencyHistogram(), new LatencyHistogram()};
+    private final LatencyHistogram[] tickLags = {new LatencyHistogram(), new LatencyHistogram()};
+    private final LatencyHistogram edtLatency = new LatencyHistogram();
+
+    private long repaintRequests;
+    private long framePixels;
+    private long lastFramePixels;
+    private long drawStart;
+    private DrawEvent drawEvent;
+    private long frameStart;
+    private FrameEvent frameEvent;
+    private final long[] tickStarts = new long[2];
+    private final long[] lastTicks = new long[2];
+    private final TickEvent[] tickEvents = new TickEvent[2];
+
+    /**
+     * When the heartbeat that has not run yet was posted, or 0 if there is none. Written by both threads.
+     */
+    private volatile long heartbeatPosted;
+    private long stalls;
+
+    /**
+     * How long the last stall kept a heartbeat waiting, in nanoseconds
+     */
+    private long lastStall;
+
+    private ScheduledExecutorService watchdog;
+
+    /**
+     * A frame painted by the grid panel
+     */
+    @Name("com.company.Frame")
+    @Label("Frame")
+    @Category({"Search Demo", "Rendering"})
+    @Description("Painting the grid panel")
+    static class FrameEvent extends Event {
+        @Label("Pixels")
+        long pixels;
+    }
+
+    /**
+     * The whole grid drawn on the image of blocks
+     */
+    @Name("com.company.DrawGrid")
+    @Label("Draw Grid")
+    @Category({"Search Demo", "Rendering"})
+    @Description("Drawing every wall of the grid on the image of blocks")
+    static class DrawEvent extends Event {
+        @Label("Pixels")
+        long pixels;
+    }
+
+    /**
+     * One tick of a timer that plays out a search
+     */
+    @Name("com.company.TimerTick")
+    @Label("Timer Tick")
+    @Category({"Search Demo", "Timers"})
+    @Description("One tick of the search or retrace timer")
+    static class TickEvent extends Event {
+        @Label("Timer")
+        String timer;
+        @Label("Lag")
+        @Description("How much later than the timer's delay the tick fired")
+        @Timespan(Timespan.NANOSECONDS)
+        long lag;
+    }
+
+    /**
+     * The event dispatch thread took too long to run a task
+     */
+    @Name("com.company.EdtStall")
+    @Label("EDT Stall")
+    @Category({"Search Demo", "Timers"})
+    @Description("The event dispatch thread took too long to run a task posted to it")
+    static class StallEvent extends Event {
+        @Label("Latency")
+        @Timespan(Timespan.NANOSECONDS)
+        long latency;
+    }
+
+    /**
+     * Starts the watchdog thread that checks on the event dispatch thread. The thread itself does not keep the
+     * program from exiting, but the tasks it posts keep the event dispatch thread busy, so it should be stopped once
+     * nothing is shown.
+     */
+    public void startWatchdog() {
+        if (watchdog != null) return;
+        watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "edt watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchdog.scheduleWithFixedDelay(this::checkHeartbeat, HEARTBEAT_MILLIS, HEARTBEAT_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the watchdog thread, if it was started
+     */
+    public void stopWatchdog() {
+        if (watchdog == null) return;
+        watchdog.shutdownNow();
+        watchdog = null;
+    }
+
+    /**
+     * Posts a heartbeat to the event dispatch thread if the last one ran. Runs on the watchdog thread.
+     */
+    private void checkHeartbeat() {
+        if (heartbeatPosted != 0) return;
+        long now = System.nanoTime();
+        heartbeatPosted = now;
+        SwingUtilities.invokeLater(() -> heartbeat(now));
+    }
+
+    /**
+     * Runs on the event dispatch thread, and measures how long it took to get there
+     * @param posted when the heartbeat was posted
+     */
+    private void heartbeat(long posted) {
+        long latency = System.nanoTime() - posted;
+        edtLatency.record(latency);
+        if (latency > TimeUnit.MILLISECONDS.toNanos(STALL_MILLIS)) {
+            stalls++;
+            lastStall = latency;
+            StallEvent event = new StallEvent();
+            event.latency = latency;
+            event.commit();
+        }
+        heartbeatPosted = 0;
+    }
+
+    /**
+     * Counts a call to repaint
+     */
+    void repaintRequested() {
+        repaintRequests++;
+    }
+
+    /**
+     * Called at the start of painting a frame
+     */
+    void beginFrame() {
+        frameEvent = new FrameEvent();
+        frameEvent.begin();
+        frameStart = System.nanoTime();
+    }
+
+    /**
+     * Called at the end of painting a frame
+     * @param pixels number of pixels the frame covered
+     */
+    void endFrame(long pixels) {
+        frameTimes.record(System.nanoTime() - frameStart);
+        lastFramePixels = pixels;
+        framePixels += pixels;
+        frameEvent.pixels = pixels;
+        frameEvent.commit();
+    }
+
+    /**
+     * Called at the start of drawing the whole grid
+     */
+    void beginDraw() {
+        drawEvent = new DrawEvent();
+        drawEvent.begin();
+        drawStart = System.nanoTime();
+    }
+
+    /**
+     * Called at the end of drawing the whole grid
+     * @param pixels number of pixels drawn
+     */
+    void endDraw(long pixels) {
+        drawTimes.record(System.nanoTime() - drawStart);
+        drawEvent.pixels = pixels;
+        drawEvent.commit();
+    }
+
+    /**
+     * Called at the start of a timer tick
+     * @param timer {@link #SEARCH_TIMER} or {@link #RETRACE_TIMER}
+     * @param delayMillis the delay of the timer
+     */
+    void beginTick(int timer, int delayMillis) {
+        long now = System.nanoTime();
+        TickEvent event = new TickEvent();
+        event.begin();
+        event.timer = TIMER_NAMES[timer];
+        long sinceLast = now - lastTicks[timer];
+        if (lastTicks[timer] != 0 && sinceLast < RESTART_NANOS) {
+            long lag = Math.max(0, sinceLast - TimeUnit.MILLISECONDS.toNanos(delayMillis));
+            tickLags[timer].record(lag);
+            event.lag = lag;
+        }
+        lastTicks[timer] = now;
+        tickStarts[timer] = now;
+        tickEvents[timer] = event;
+    }
+
+    /**
+     * Called at the end of a timer tick
+     * @param timer {@link #SEARCH_TIMER} or {@link #RETRACE_TIMER}
+     */
+    void endTick(int timer) {
+        tickTimes[timer].record(System.nanoTime() - tickStarts[timer]);
+        tickEvents[timer].commit();
+    }
+
+    /**
+     * Gets the numbers to show on the overlay, one line each
+     * @return the lines
+     */
+    String[] lines() {
+        long frames = frameTimes.count();
+        return new String[] {
+                "frame   " + summary(frameTimes),
+                "draw    " + summary(drawTimes),
+                "search  " + summary(tickTimes[SEARCH_TIMER]) + "  late " + summary(tickLags[SEARCH_TIMER]),
+                "retrace " + summary(tickTimes[RETRACE_TIMER]) + "  late " + summary(tickLags[RETRACE_TIMER]),
+                String.format("repaints %d asked, %d painted, %d coalesced", repaintRequests, frames,
+                        Math.max(0, repaintRequests - frames)),
+                String.format("pixels/frame %d last, %d mean", lastFramePixels, frames == 0 ? 0 : framePixels / frames),
+                String.format("edt     %s  stalls %d, last %.0f ms", summary(edtLatency), stalls, lastStall / 1e6)
+        };
+    }
+
+    /**
+     * @return a short summary of a histogram, in milliseconds
+     */
+    private static String summary(LatencyHistogram histogram) {
+        return String.format("p50 %.1f p99 %.1f max %.1f ms", histogram.percentile(0.5) / 1e6,
+                histogram.percentile(0.99) / 1e6, histogram.max() / 1e6);
+    }
+
+    @Override
+    public String toString() {
+        return String.join("\n", lines());
+    }
+}
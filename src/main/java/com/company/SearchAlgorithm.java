@@ -1,6 +1,7 @@
 package com.company;
 
 import java.awt.*;
+import java.util.Arrays;
 import java.util.function.BiConsumer;
 
 /**
@@ -11,32 +12,109 @@ import java.util.function.BiConsumer;
  *     <li>Retrace steps that algorithm took</li>
  * </ol>
  *
- * Classes that extend this class must implement the next method, to find the next point to search on,
- * connect all States to the start State each step, and update the currentState variable when done
+ * Classes that extend this class must implement the step method, to find the next square to search on,
+ * connect all States to the start State each step, and call {@link #finish(State)} with the destination State when
+ * done. Each step should start with {@link #beginStep()}, which stops the search if it was cancelled or ran out of
+ * time or expansions, and a search that runs out of squares should call {@link #end(SearchStatus)} with
+ * {@link SearchStatus#UNREACHABLE}.
+ * <p>
+ * Squares can also be referred to by a single index, {@code x * height + y}, where height is the length of each
+ * column of the grid. The batched methods, {@link #next(int[], int)} and {@link #path()}, use these indexes so they do
+ * not need to create a Point for every square.
  */
 public abstract class SearchAlgorithm {
 
     /**
-     * Location of destination
+     * The cancellation token and deadline are checked once every this many plus one expansions, since reading a
+     * volatile field and the clock every step would slow the search down. Must be one less than a power of two.
+     */
+    private static final int CHECK_MASK = 63;
+
+    /**
+     * Location of destination. If there are many goals, this is the first one.
      */
     protected final Point dest;
+    /**
+     * Index of every goal, sorted. The search can end at any of them.
+     */
+    protected final int[] goalCells;
     /**
      * The grid to search
      */
     protected final boolean[][] grid;
+    /**
+     * Height of the grid, used to turn coordinates into an index
+     */
+    protected final int height;
     /**
      * Current State object, set to the destination object when done. This should link to previous states,
      * which in turn link to previous states, until the start state is reached.
      */
     protected State currentState;
+    /**
+     * The destination State once the search is done, which stays the same while the path is retraced
+     */
+    private State goal;
     /**
      * Whether the search is done
      */
     protected boolean notDone = true;
+    /**
+     * Number of squares expanded so far
+     */
+    protected long expansions;
+    private SearchStatus status = SearchStatus.RUNNING;
+    private CancellationToken cancellationToken;
+    /**
+     * Value of System.nanoTime() to stop at, only used if hasDeadline is true
+     */
+    private long deadlineNanos;
+    private boolean hasDeadline;
+    /**
+     * Most squares to expand, or 0 for no limit
+     */
+    private long maxExpansions;
 
     public SearchAlgorithm(boolean[][] grid, int x1, int y1, int x2, int y2) {
         dest = new Point(x2, y2);
         this.grid = grid;
+        height = grid[0].length;
+        goalCells = new int[] {x2 * height + y2};
+    }
+
+    /**
+     * Creates a search that ends at whichever of many goals it reaches first
+     * @param grid the grid to search
+     * @param goals the goals, at least one
+     * @throws IllegalArgumentException if there are no goals
+     */
+    protected SearchAlgorithm(boolean[][] grid, Point[] goals) {
+        if (goals.length == 0) throw new IllegalArgumentException("Need at least one goal");
+        dest = new Point(goals[0]);
+        this.grid = grid;
+        height = grid[0].length;
+        int[] cells = new int[goals.length];
+        for (int i = 0; i < goals.length; i++) {
+            cells[i] = goals[i].x * height + goals[i].y;
+        }
+        Arrays.sort(cells);
+        goalCells = cells;
+    }
+
+    /**
+     * @param cell index of a square
+     * @return whether the square is one of the goals
+     */
+    protected boolean isGoal(int cell) {
+        return goalCells.length == 1 ? cell == goalCells[0] : Arrays.binarySearch(goalCells, cell) >= 0;
+    }
+
+    /**
+     * Gets the goal the search reached, which is useful when there were many goals to choose from
+     * @return the goal, or null if the search did not reach one
+     */
+    public Point getReachedGoal() {
+        return goal == null ? null : new Point(goal.point);
     }
 
     /**
@@ -64,15 +142,174 @@ public abstract class SearchAlgorithm {
         }
     }
 
+    /**
+     * Builds the chain of States for a path that was stored as the square each square was reached from. A square can
+     * be reached from one several steps away in a straight line, in which case the squares in between are filled in.
+     * @param cell index of the last square of the path
+     * @param parents index of the square each square was reached from, -1 for the start
+     * @return State of the last square, which links back to the start
+     */
+    protected State pathTo(int cell, int[] parents) {
+        State head = null;
+        State tail = null;
+        // the chain is built from the last square back, but each State points to the one before it
+        for (int c = cell; c != -1; c = parents[c]) {
+            int parent = parents[c];
+            int step = parent == -1 ? 0 : c / height == parent / height ? Integer.signum(parent - c)
+                    : Integer.signum(parent - c) * height;
+            int s = c;
+            do {
+                State state = new State(new Point(s / height, s % height), null);
+                if (tail == null) head = state;
+                else tail.prev = state;
+                tail = state;
+                s += step;
+            } while (s != parent && step != 0);
+        }
+        return head;
+    }
+
+    /**
+     * Marks the search as done
+     * @param goal State of the destination, which links back to the start
+     */
+    protected void finish(State goal) {
+        end(SearchStatus.SUCCEEDED);
+        currentState = goal;
+        this.goal = goal;
+    }
+
+    /**
+     * Ends the search
+     * @param status how the search ended
+     */
+    protected void end(SearchStatus status) {
+        notDone = false;
+        this.status = status;
+    }
+
+    /**
+     * Checks whether the search has been cancelled or ran out of time or expansions. The cancellation token and the
+     * deadline are only checked every 64 expansions, unless always is true.
+     * @param always whether to check the cancellation token and deadline no matter how many expansions there were
+     * @return CANCELLED or OUT_OF_BUDGET if the search should stop, or null if it can go on
+     */
+    protected SearchStatus checkLimits(boolean always) {
+        if (maxExpansions > 0 && expansions >= maxExpansions) return SearchStatus.OUT_OF_BUDGET;
+        if (always || (expansions & CHECK_MASK) == 0) {
+            if (cancellationToken != null && cancellationToken.isCancelled()) return SearchStatus.CANCELLED;
+            if (hasDeadline && System.nanoTime() - deadlineNanos >= 0) return SearchStatus.OUT_OF_BUDGET;
+        }
+        return null;
+    }
+
+    /**
+     * Should be called before expanding each square. Ends the search if it was cancelled or ran out of time or
+     * expansions, and otherwise counts the expansion.
+     * @return true if the square can be expanded, false if the search was ended
+     */
+    protected boolean beginStep() {
+        SearchStatus limit = checkLimits(false);
+        if (limit != null) {
+            end(limit);
+            return false;
+        }
+        expansions++;
+        return true;
+    }
+
+    /**
+     * Lets the search be stopped from another thread
+     * @param token the token, or null for none
+     * @return this search
+     */
+    public SearchAlgorithm setCancellationToken(CancellationToken token) {
+        cancellationToken = token;
+        return this;
+    }
+
+    /**
+     * Stops the search once a point in time is reached
+     * @param deadlineNanos value of {@link System#nanoTime()} to stop at
+     * @return this search
+     */
+    public SearchAlgorithm setDeadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+        hasDeadline = true;
+        return this;
+    }
+
+    /**
+     * Stops the search after expanding some number of squares
+     * @param maxExpansions most squares to expand, or 0 for no limit
+     * @return this search
+     */
+    public SearchAlgorithm setMaxExpansions(long maxExpansions) {
+        this.maxExpansions = maxExpansions;
+        return this;
+    }
+
+    /**
+     * @return how the search ended, or RUNNING if it has not ended yet
+     */
+    public SearchStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the number of squares expanded so far
+     */
+    public long getExpansions() {
+        return expansions;
+    }
+
+    /**
+     * Runs the search until it ends
+     * @return how the search ended
+     */
+    public SearchStatus run() {
+        int[] visited = new int[256];
+        while (hasNext()) {
+            next(visited, visited.length);
+        }
+        return status;
+    }
+
+    /**
+     * Visits the next square
+     * @return index of the square, or -1 if the search ended without visiting one (see {@link #getStatus()})
+     */
+    protected abstract int step();
+
     /**
      * This should tell us the next point the algorithm visits
-     * @return a Point object
+     * @return a Point object, or null if the search ended without visiting a point (see {@link #getStatus()})
      */
-    public abstract Point next();
+    public Point next() {
+        int curr = step();
+        return curr == -1 ? null : new Point(curr / height, curr % height);
+    }
+
+    /**
+     * Visits up to maxSteps points at once, stopping early if the search is done. This does not create a Point for
+     * every step.
+     * @param visited where to write the index of each visited square, starting at 0
+     * @param maxSteps most squares to visit; visited must be at least this long
+     * @return the number of squares visited
+     */
+    public int next(int[] visited, int maxSteps) {
+        int count = 0;
+        while (count < maxSteps && notDone) {
+            int curr = step();
+            if (curr == -1) break;
+            visited[count++] = curr;
+        }
+        return count;
+    }
 
     /**
      * Tells us whether there are more points to explore
-     * @return true if there is
+     * @return true if there is, false once the search has ended for any reason
      */
     public boolean hasNext() {
         return notDone;
@@ -86,6 +323,30 @@ public abstract class SearchAlgorithm {
         return currentState != null;
     }
 
+    /**
+     * Gets the whole path once the search is done. Unlike {@link #retrace()}, this goes from the start to the
+     * destination, and does not depend on how much of the path was already retraced.
+     * @return the index of each square on the path, or an empty array if the search is not done
+     */
+    public int[] path() {
+        int length = 0;
+        for (State s = goal; s != null; s = s.prev) length++;
+        int[] path = new int[length];
+        for (State s = goal; s != null; s = s.prev) {
+            path[--length] = s.point.x * height + s.point.y;
+        }
+        return path;
+    }
+
+    /**
+     * Gets the whole path once the search is done, stored as runs of steps in the same direction. This is built
+     * straight from the search's chain of states, and takes far less memory than the points or indexes of the path.
+     * @return the path, or null if the search is not done or did not reach the destination
+     */
+    public EncodedPath encodedPath() {
+        return goal == null ? null : EncodedPath.of(goal);
+    }
+
     /**
      * Retraces one step
      * @return A Point object representing the previous step
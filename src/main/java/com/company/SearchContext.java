@@ -0,0 +1,179 @@
+package com.company;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Scratch space for a search, which can be reused from one search to the next. Instead of clearing the arrays before
+ * each search, every search gets a new mark, and a square only counts as seen or closed if it holds the current mark.
+ * Starting a search is then constant time, so a short search on a large grid only costs as much as the squares it
+ * looks at. A search that goes over the grid in several passes, like {@link AnytimeAStar}, can also start a new pass,
+ * which opens every closed square again in the same way.
+ * <p>
+ * A context can only be used by one search at a time. Starting a new search with it makes the old search's data
+ * invalid, so the old search should not be stepped any more.
+ * @see Pool
+ */
+public class SearchContext {
+
+    /**
+     * A pool of contexts that can be shared between threads, so each search can borrow one and give it back when it
+     * is done
+     */
+    public static class Pool {
+
+        private final ConcurrentLinkedDeque<SearchContext> free = new ConcurrentLinkedDeque<>();
+
+        /**
+         * Borrows a context, making a new one if there are none free that are large enough
+         * @param cells number of squares in the grid that will be searched
+         * @return the context
+         */
+        public SearchContext acquire(int cells) {
+            SearchContext context;
+            while ((context = free.pollFirst()) != null) {
+                if (context.capacity() >= cells) return context;
+                // too small for this grid, so let it be garbage collected
+            }
+            return new SearchContext(cells);
+        }
+
+        /**
+         * Gives a context back to the pool
+         * @param context the context, which should not be used again by the caller
+         */
+        public void release(SearchContext context) {
+            free.addFirst(context);
+        }
+    }
+
+    /**
+     * The mark of each square. A square is seen if it is at least {@link #base}, and closed if it is one more than
+     * {@link #mark}.
+     */
+    private final int[] marks;
+
+    /**
+     * The mark the current search started with
+     */
+    private int base;
+
+    /**
+     * The mark for the current pass of the search. It goes up by one each pass, and by two each search, so one more
+     * than it is never a mark left over from before.
+     */
+    private int mark;
+
+    /**
+     * Distance to each square. Only valid for squares that are seen in the current search.
+     */
+    final int[] distances;
+
+    /**
+     * The square each square was reached from. Only valid for squares that are seen in the current search.
+     */
+    final int[] parents;
+
+    /**
+     * A queue with room for every square
+     */
+    final int[] queue;
+
+    /**
+     * A priority queue, emptied at the start of each search
+     */
+    final CellHeap heap = new CellHeap(64);
+
+    /**
+     * Creates a context
+     * @param cells number of squares in the largest grid that will be searched with it
+     */
+    public SearchContext(int cells) {
+        marks = new int[cells];
+        distances = new int[cells];
+        parents = new int[cells];
+        queue = new int[cells];
+    }
+
+    /**
+     * @return the number of squares this context has room for
+     */
+    public int capacity() {
+        return marks.length;
+    }
+
+    /**
+     * Starts a new search, forgetting everything from the last one
+     * @param cells number of squares in the grid being searched
+     * @throws IllegalArgumentException if the context is too small for the grid
+     */
+    void begin(int cells) {
+        if (cells > marks.length) {
+            throw new IllegalArgumentException("Context has room for " + marks.length + " squares, not " + cells);
+        }
+        if (mark >= Integer.MAX_VALUE - 2) {
+            // the marks ran out, so clear them once and start over
+            Arrays.fill(marks, 0);
+            mark = 0;
+        }
+        mark += 2;
+        base = mark;
+        heap.clear();
+    }
+
+    /**
+     * Starts another pass of the current search. Every square keeps its distance and stays seen, but none of them are
+     * closed any more.
+     */
+    void nextPass() {
+        if (mark >= Integer.MAX_VALUE - 2) {
+            // the marks ran out, so move this search's marks down to the bottom and clear the rest
+            for (int i = 0; i < marks.length; i++) {
+                marks[i] = marks[i] >= base ? marks[i] - base + 2 : 0;
+            }
+            mark -= base - 2;
+            base = 2;
+        }
+        mark++;
+    }
+
+    /**
+     * @param cell index of the square
+     * @return whether the square has been seen in this search
+     */
+    boolean isSeen(int cell) {
+        return marks[cell] >= base;
+    }
+
+    /**
+     * Marks a square as seen. This should not be done to a closed square, since it would no longer be closed.
+     * @param cell index of the square
+     */
+    void see(int cell) {
+        marks[cell] = base;
+    }
+
+    /**
+     * @param cell index of the square
+     * @return whether the square has been closed in this search
+     */
+    boolean isClosed(int cell) {
+        return marks[cell] == mark + 1;
+    }
+
+    /**
+     * Marks a square as closed, which also counts as seen
+     * @param cell index of the square
+     */
+    void close(int cell) {
+        marks[cell] = mark + 1;
+    }
+
+    /**
+     * @param cell index of the square
+     * @return the distance to the square, or Integer.MAX_VALUE if it has not been seen
+     */
+    int distance(int cell) {
+        return marks[cell] >= base ? distances[cell] : Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,28 @@
+package com.company;
+
+/**
+ * How a search ended, or whether it is still going
+ * @see SearchAlgorithm#getStatus()
+ */
+public enum SearchStatus {
+    /**
+     * The search has not ended yet
+     */
+    RUNNING,
+    /**
+     * The destination was reached, and the path can be retraced
+     */
+    SUCCEEDED,
+    /**
+     * Every square that can be reached was searched without finding the destination
+     */
+    UNREACHABLE,
+    /**
+     * The search was stopped with a {@link CancellationToken}
+     */
+    CANCELLED,
+    /**
+     * The search ran past its deadline or used up its expansions before reaching the destination
+     */
+    OUT_OF_BUDGET
+}
@@ -0,0 +1,209 @@
+package com.company;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads a trace file written by {@link TraceWriter}. The expanded squares are read a buffer at a time as they are
+ * asked for, so a trace of any length can be played back without loading it into memory.
+ * @see TraceReplay
+ */
+public class TraceReader implements Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+    private final String algorithm;
+    private final int width;
+    private final int height;
+    private final long mapHash;
+    private final int start;
+    private final int dest;
+
+    /**
+     * The last square read, which the next one is stored relative to
+     */
+    private int last;
+
+    /**
+     * Whether every expanded square was read
+     */
+    private boolean expansionsEnded;
+
+    /**
+     * Whether the file reached its end
+     */
+    private boolean endOfFile;
+
+    /**
+     * Opens a trace file and reads its header
+     * @param file the file to read
+     * @throws IOException if the file cannot be read or is not a trace
+     */
+    public TraceReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            buffer.flip();
+            require(Integer.BYTES + 1 + Short.BYTES);
+            if (buffer.getInt() != TraceWriter.MAGIC) throw new IOException("Not a search trace: " + file);
+            byte version = buffer.get();
+            if (version != TraceWriter.VERSION) throw new IOException("Unknown trace version " + version + ": " + file);
+            byte[] name = new byte[buffer.getShort() & 0xFFFF];
+            require(name.length + 4 * Integer.BYTES + Long.BYTES);
+            buffer.get(name);
+            algorithm = new String(name, StandardCharsets.UTF_8);
+            width = buffer.getInt();
+            height = buffer.getInt();
+            mapHash = buffer.getLong();
+            start = buffer.getInt();
+            dest = buffer.getInt();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads more of the file until the buffer holds at least some number of bytes
+     * @param bytes number of bytes needed
+     * @throws EOFException if the file ends first
+     */
+    private void require(int bytes) throws IOException {
+        if (!fill(bytes)) throw new EOFException("Search trace ends early");
+    }
+
+    /**
+     * Reads more of the file until the buffer holds at least some number of bytes, or the file ends
+     * @param bytes number of bytes wanted
+     * @return true if the buffer holds that many bytes
+     */
+    private boolean fill(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) return true;
+        buffer.compact();
+        while (buffer.position() < bytes && !endOfFile) {
+            if (channel.read(buffer) == -1) endOfFile = true;
+        }
+        buffer.flip();
+        return buffer.remaining() >= bytes;
+    }
+
+    /**
+     * Reads the next square of a list
+     * @return index of the square, or -1 if the list or the file ended
+     */
+    private int read() throws IOException {
+        fill(TraceWriter.MAX_VARINT_BYTES);
+        if (!buffer.hasRemaining()) return -1;
+        long v = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (!buffer.hasRemaining()) throw new EOFException("Search trace ends in the middle of a square");
+            b = buffer.get();
+            v |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        if (v == 0) {
+            last = 0;
+            return -1;
+        }
+        v--;
+        last += (int) ((v >>> 1) ^ -(v & 1));
+        return last;
+    }
+
+    /**
+     * Reads the next square the search expanded
+     * @return index of the square, or -1 once every expanded square was read
+     * @throws IOException if the file cannot be read
+     */
+    public int nextExpansion() throws IOException {
+        if (expansionsEnded) return -1;
+        int cell = read();
+        if (cell == -1) expansionsEnded = true;
+        return cell;
+    }
+
+    /**
+     * Reads the path the search found, skipping any expanded squares that were not read yet
+     * @return index of each square of the path, from start to destination, an empty array if the search did not find
+     * one, or null if the file ends before the path because the search was stopped
+     * @throws IOException if the file cannot be read
+     */
+    public int[] readPath() throws IOException {
+        while (nextExpansion() != -1) {
+            // skip to the end of the list
+        }
+        if (!fill(1)) return null;
+        int[] path = new int[16];
+        int length = 0;
+        int cell;
+        while ((cell = read()) != -1) {
+            if (length == path.length) path = Arrays.copyOf(path, length * 2);
+            path[length++] = cell;
+        }
+        return Arrays.copyOf(path, length);
+    }
+
+    /**
+     * @return name of the algorithm that was recorded
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return width of the grid, including the border
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return height of the grid, including the border
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the {@link TraceWriter#mapHash} of the grid that was searched
+     */
+    public long getMapHash() {
+        return mapHash;
+    }
+
+    /**
+     * @return index of the start
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * @return index of the destination
+     */
+    public int getDest() {
+        return dest;
+    }
+
+    /**
+     * Checks whether the trace was recorded on a grid
+     * @param grid the grid
+     * @return true if the size and the walls match
+     */
+    public boolean matches(boolean[][] grid) {
+        return grid.length == width && grid[0].length == height && TraceWriter.mapHash(grid) == mapHash;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,86 @@
+package com.company;
+
+import java.awt.*;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Plays back a search recorded by {@link TraceWriter}, expanding the same squares in the same order and then giving
+ * the same path, without searching anything. Squares are read from the file as they are asked for, so it can be
+ * played back at any speed. The file is closed once the path is read, or by {@link #close()} if the replay is
+ * stopped early.
+ * <p>
+ * The next methods cannot throw checked exceptions, so if the file cannot be read they throw an
+ * {@link UncheckedIOException}.
+ */
+public class TraceReplay extends SearchAlgorithm implements Closeable {
+
+    private final TraceReader reader;
+
+    /**
+     * Creates a replay of a trace
+     * @param grid the grid the trace was recorded on
+     * @param reader the trace, which is read from where it is now
+     * @throws IllegalArgumentException if the trace was recorded on a different grid
+     */
+    public TraceReplay(boolean[][] grid, TraceReader reader) {
+        super(grid, reader.getStart() / reader.getHeight(), reader.getStart() % reader.getHeight(),
+                reader.getDest() / reader.getHeight(), reader.getDest() % reader.getHeight());
+        if (!reader.matches(grid)) throw new IllegalArgumentException("The trace was recorded on a different map");
+        this.reader = reader;
+    }
+
+    /**
+     * Reads the next expanded square, or the path once there are no more
+     * @return index of the square, or -1 if the replay ended
+     */
+    @Override
+    protected int step() {
+        if (!beginStep()) {
+            close();
+            return -1;
+        }
+        try {
+            int cell = reader.nextExpansion();
+            if (cell != -1) return cell;
+            int[] path = reader.readPath();
+            close();
+            if (path == null) {
+                // the recorded search was stopped before it finished
+                end(SearchStatus.CANCELLED);
+            } else if (path.length == 0) {
+                end(SearchStatus.UNREACHABLE);
+            } else {
+                State state = null;
+                for (int c : path) {
+                    state = new State(new Point(c / height, c % height), state);
+                }
+                finish(state);
+            }
+            return -1;
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return name of the algorithm that was recorded
+     */
+    public String getAlgorithm() {
+        return reader.getAlgorithm();
+    }
+
+    /**
+     * Closes the trace file. Anything the replay did not read yet is lost.
+     */
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            // nothing more is read from the file, so there is nothing to lose
+        }
+    }
+}
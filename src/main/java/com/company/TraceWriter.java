@@ -0,0 +1,213 @@
+package com.company;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Records the squares a search expands, in order, and the path it found, to a file that {@link TraceReader} can play
+ * back later, so a search that did something strange can be looked at again square by square.
+ * <p>
+ * The file starts with a header:
+ * <ol>
+ *     <li>the int {@link #MAGIC} and the byte {@link #VERSION}</li>
+ *     <li>the name of the algorithm, as a short length and that many bytes of UTF-8</li>
+ *     <li>the width and height of the grid, including the border, as ints</li>
+ *     <li>the {@link #mapHash} of the grid, as a long</li>
+ *     <li>the index of the start and the destination, as ints</li>
+ * </ol>
+ * After that come the expanded squares and then the squares of the path, from start to destination. A search that was
+ * stopped before it ended has no path, and its file ends after the expanded squares. Each square is stored as the
+ * difference from the square before it in the same list, which is small since searches mostly move to nearby squares.
+ * The difference is zigzag encoded, so small negative numbers are small too, plus one, and written as a varint: seven
+ * bits to a byte, lowest first, with the high bit set on every byte but the last. Most squares take a single byte. A
+ * zero byte ends each list. Everything is big endian, so files can be moved between machines.
+ * <p>
+ * Bytes are put in an array and only written to the file channel when it is full, so recording costs a few
+ * instructions for each square.
+ */
+public class TraceWriter implements Closeable {
+
+    /**
+     * First four bytes of every trace file, "STRC" in ASCII
+     */
+    static final int MAGIC = 0x53545243;
+
+    /**
+     * Version of the file format
+     */
+    static final byte VERSION = 1;
+
+    /**
+     * Most bytes a single varint can take
+     */
+    static final int MAX_VARINT_BYTES = 10;
+
+    private final FileChannel channel;
+
+    /**
+     * Bytes waiting to be written. A plain array is used rather than putting each byte in a ByteBuffer, which would
+     * check the position and limit for every byte.
+     */
+    private final byte[] bytes = new byte[1 << 16];
+    private final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    private int size;
+
+    /**
+     * The last square written, which the next one is stored relative to
+     */
+    private int last;
+
+    /**
+     * Whether the list of expanded squares was ended and the path is next
+     */
+    private boolean expansionsEnded;
+
+    /**
+     * Creates a trace file and writes its header
+     * @param file the file to write to, which is replaced if it exists
+     * @param algorithm name of the algorithm, to tell the traces apart
+     * @param grid the grid being searched
+     * @param x1 x coordinate of the start
+     * @param y1 y coordinate of the start
+     * @param x2 x coordinate of the destination
+     * @param y2 y coordinate of the destination
+     * @throws IOException if the file cannot be written
+     */
+    public TraceWriter(Path file, String algorithm, boolean[][] grid, int x1, int y1, int x2, int y2)
+            throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        int height = grid[0].length;
+        byte[] name = algorithm.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(MAGIC).put(VERSION);
+        buffer.putShort((short) name.length).put(name);
+        buffer.putInt(grid.length).putInt(height).putLong(mapHash(grid));
+        buffer.putInt(x1 * height + y1).putInt(x2 * height + y2);
+        size = buffer.position();
+    }
+
+    /**
+     * Hashes the walls of a grid, so a trace can tell whether it is being played back on the same map. This is the
+     * 64 bit FNV-1a hash of the width, the height, and the walls packed 64 to a long, column by column.
+     * @param grid the grid
+     * @return the hash
+     */
+    public static long mapHash(boolean[][] grid) {
+        long hash = 0xcbf29ce484222325L;
+        hash = (hash ^ grid.length) * 0x100000001b3L;
+        hash = (hash ^ grid[0].length) * 0x100000001b3L;
+        long bits = 0;
+        int count = 0;
+        for (boolean[] column : grid) {
+            for (boolean wall : column) {
+                bits = bits << 1 | (wall ? 1 : 0);
+                if (++count == 64) {
+                    hash = (hash ^ bits) * 0x100000001b3L;
+                    bits = 0;
+                    count = 0;
+                }
+            }
+        }
+        return (hash ^ bits) * 0x100000001b3L;
+    }
+
+    /**
+     * Writes squares that were expanded, in the order they were expanded
+     * @param cells index of each square
+     * @param count number of squares to write from the start of cells
+     * @throws IOException if the file cannot be written
+     */
+    public void writeExpansions(int[] cells, int count) throws IOException {
+        if (expansionsEnded) throw new IllegalStateException("The path was already written");
+        for (int i = 0; i < count; i++) {
+            if (size > bytes.length - MAX_VARINT_BYTES) flush();
+            write(cells[i]);
+        }
+    }
+
+    /**
+     * Ends the list of expanded squares and writes the path. Nothing can be written after this.
+     * @param path index of each square of the path, from start to destination, or an empty array if there is none
+     * @throws IOException if the file cannot be written
+     */
+    public void writePath(int[] path) throws IOException {
+        if (expansionsEnded) throw new IllegalStateException("The path was already written");
+        endList();
+        expansionsEnded = true;
+        for (int cell : path) {
+            if (size > bytes.length - MAX_VARINT_BYTES) flush();
+            write(cell);
+        }
+        endList();
+    }
+
+    /**
+     * Runs a search until it ends, writing every square it expands and then the path it found. If the search was
+     * cancelled or ran out of time or expansions, no path is written, so it is played back as a search that was
+     * stopped rather than one that found no path.
+     * @param search the search, which should not have been started yet
+     * @return how the search ended
+     * @throws IOException if the file cannot be written
+     */
+    public SearchStatus record(SearchAlgorithm search) throws IOException {
+        int[] visited = new int[256];
+        while (search.hasNext()) {
+            writeExpansions(visited, search.next(visited, visited.length));
+        }
+        SearchStatus status = search.getStatus();
+        if (status == SearchStatus.SUCCEEDED || status == SearchStatus.UNREACHABLE) writePath(search.path());
+        return status;
+    }
+
+    /**
+     * Writes a square as a varint, relative to the last square
+     * @param cell index of the square
+     */
+    private void write(int cell) {
+        long delta = (long) cell - last;
+        last = cell;
+        long v = ((delta << 1) ^ (delta >> 63)) + 1;
+        while ((v & ~0x7FL) != 0) {
+            bytes[size++] = (byte) (v | 0x80);
+            v >>>= 7;
+        }
+        bytes[size++] = (byte) v;
+    }
+
+    /**
+     * Ends a list of squares, so the next list starts over from square 0
+     */
+    private void endList() throws IOException {
+        if (size == bytes.length) flush();
+        bytes[size++] = 0;
+        last = 0;
+    }
+
+    /**
+     * Writes everything in the buffer to the file
+     */
+    private void flush() throws IOException {
+        buffer.clear().limit(size);
+        while (buffer.hasRemaining()) channel.write(buffer);
+        size = 0;
+    }
+
+    /**
+     * Writes what is left in the buffer and closes the file. If the path was never written, the file ends with the
+     * expanded squares, and {@link TraceReader} plays it back as a search that was stopped.
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
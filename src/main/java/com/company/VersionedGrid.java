@@ -0,0 +1,146 @@
+package com.company;
+
+import java.util.Arrays;
+
+/**
+ * A grid of walls that can be changed while searches run on earlier versions of it. {@link #snapshot()} gives a
+ * frozen copy of the grid, but instead of copying every square, the snapshot shares the columns of the grid with the
+ * live version. The first time a column is changed after a snapshot, the live version copies just that column, so
+ * taking a snapshot costs one array of column references, and each edit after it costs at most one column.
+ * <p>
+ * A snapshot is never written to, so it can be handed to any number of searches on any number of threads. The
+ * methods of this class are synchronized, so edits and snapshots can also come from different threads.
+ */
+public class VersionedGrid {
+
+    /**
+     * The live version. This array is never replaced, only the columns in it, so a reference to it always sees the
+     * latest version.
+     */
+    private final boolean[][] columns;
+
+    /**
+     * Whether each column belongs only to the live version, and so can be written to without copying it
+     */
+    private final boolean[] owned;
+
+    /**
+     * The last snapshot taken, or null if the grid changed since then
+     */
+    private boolean[][] snapshot;
+
+    /**
+     * Number of changes made so far
+     */
+    private long version;
+
+    /**
+     * Creates a grid with no walls
+     * @param width number of columns, including any border
+     * @param height number of squares in each column, including any border
+     */
+    public VersionedGrid(int width, int height) {
+        columns = new boolean[width][height];
+        owned = new boolean[width];
+        Arrays.fill(owned, true);
+    }
+
+    /**
+     * Gets a frozen copy of the grid as it is now. If nothing has changed since the last snapshot, the same array is
+     * returned again.
+     * @return the grid, true if there is a wall. It must not be written to.
+     */
+    public synchronized boolean[][] snapshot() {
+        if (snapshot == null) {
+            snapshot = columns.clone();
+            // every column is now shared with the snapshot, so the next write to each one has to copy it
+            Arrays.fill(owned, false);
+        }
+        return snapshot;
+    }
+
+    /**
+     * @param x x coordinate of the square
+     * @param y y coordinate of the square
+     * @return whether the square is a wall in the live version
+     */
+    public synchronized boolean get(int x, int y) {
+        return columns[x][y];
+    }
+
+    /**
+     * Changes one square in the live version
+     * @param x x coordinate of the square
+     * @param y y coordinate of the square
+     * @param wall whether the square should be a wall
+     * @return true if the square changed
+     */
+    public synchronized boolean set(int x, int y, boolean wall) {
+        if (columns[x][y] == wall) return false;
+        own(x);
+        columns[x][y] = wall;
+        changed();
+        return true;
+    }
+
+    /**
+     * Gets the live version to read from. The array always shows the latest version, since it is never replaced, but
+     * it should only be read on the thread that makes the changes.
+     * @return the live grid, which must not be written to; use {@link #set} or {@link #mutableGrid()} instead
+     */
+    public boolean[][] current() {
+        return columns;
+    }
+
+    /**
+     * Gets the live version to make many changes to at once, such as to fill the whole grid. Every column that is
+     * shared with a snapshot is copied first, so the changes can be written straight into the array. The changes must
+     * be finished before the next snapshot is taken, so they should be made on the same thread that takes snapshots.
+     * @return the live grid, which can be written to until the next call to {@link #snapshot()}
+     */
+    public synchronized boolean[][] mutableGrid() {
+        for (int x = 0; x < columns.length; x++) {
+            own(x);
+        }
+        changed();
+        return columns;
+    }
+
+    /**
+     * Makes sure a column belongs only to the live version, copying it if it is shared with a snapshot
+     * @param x the column
+     */
+    private void own(int x) {
+        if (!owned[x]) {
+            columns[x] = columns[x].clone();
+            owned[x] = true;
+        }
+    }
+
+    private void changed() {
+        snapshot = null;
+        version++;
+    }
+
+    /**
+     * @return the number of changes made so far, which goes up each time a square is set or the mutable grid is
+     * taken
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return number of columns, including any border
+     */
+    public int getWidth() {
+        return columns.length;
+    }
+
+    /**
+     * @return number of squares in each column, including any border
+     */
+    public int getHeight() {
+        return columns[0].length;
+    }
+}